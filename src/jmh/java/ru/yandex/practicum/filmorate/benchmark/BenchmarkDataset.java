@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Детерминированный набор данных для бенчмарков: пользователи, фильмы с жанрами, лайки и дружба.
+ * Одни и те же данные загружаются и во встроенную H2, и в in-memory хранилища.
+ */
+public class BenchmarkDataset {
+
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    private final int users;
+    private final int films;
+    private final List<long[]> likes = new ArrayList<>();
+    private final List<long[]> friendships = new ArrayList<>();
+
+    public BenchmarkDataset(int users, int films, int likesPerFilm, int friendsPerUser) {
+        this.users = users;
+        this.films = films;
+        Random random = new Random(42);
+
+        for (long filmId = 1; filmId <= films; filmId++) {
+            // Степенное распределение: немногие фильмы собирают большую часть лайков
+            int count = Math.min(users, (int) (likesPerFilm * 2 / (1 + random.nextDouble() * 3)));
+            for (long userId : distinct(random, count, users, 0)) {
+                likes.add(new long[]{filmId, userId});
+            }
+        }
+        for (long userId = 1; userId <= users; userId++) {
+            for (long friendId : distinct(random, Math.min(friendsPerUser, users - 1), users, userId)) {
+                friendships.add(new long[]{userId, friendId});
+            }
+        }
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getFilms() {
+        return films;
+    }
+
+    public ConfigurableApplicationContext startApplication() {
+        return startApplication(WebApplicationType.NONE);
+    }
+
+    public ConfigurableApplicationContext startApplication(WebApplicationType webApplicationType, String... args) {
+        String url = "jdbc:h2:mem:benchmark" + DATABASE_COUNTER.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        seed(new JdbcTemplate(new DriverManagerDataSource(url, "sa", "password")));
+        List<String> arguments = new ArrayList<>(List.of("--spring.datasource.url=" + url,
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.jdbc.core=WARN",
+                "--logging.level.org.springframework.jdbc.datasource=WARN"));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(webApplicationType)
+                .run(arguments.toArray(String[]::new));
+    }
+
+    public void seed(JdbcTemplate jdbcTemplate) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(jdbcTemplate.getDataSource());
+
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (long id = 1; id <= users; id++) {
+            userRows.add(new Object[]{id, "user" + id + "@mail.ru", "user" + id, "User " + id,
+                    Date.valueOf(birthday(id))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                userRows);
+
+        List<Object[]> filmRows = new ArrayList<>(films);
+        List<Object[]> genreRows = new ArrayList<>();
+        for (long id = 1; id <= films; id++) {
+            filmRows.add(new Object[]{id, "Film " + id, "Description of film " + id,
+                    Date.valueOf(releaseDate(id)), 90 + (int) (id % 60), mpa(id)});
+            for (int genreId : genres(id)) {
+                genreRows.add(new Object[]{id, genreId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO films (id, name, description, release_date, duration, mpa_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", filmRows);
+        jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genreRows);
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (users + 1));
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (films + 1));
+
+        jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", toRows(likes));
+        jdbcTemplate.batchUpdate("INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)", toRows(friendships));
+    }
+
+    public void seed(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage) {
+        for (long id = 1; id <= users; id++) {
+            User user = new User();
+            user.setEmail("user" + id + "@mail.ru");
+            user.setLogin("user" + id);
+            user.setName("User " + id);
+            user.setBirthday(birthday(id));
+            userStorage.save(user);
+        }
+        for (long id = 1; id <= films; id++) {
+            Film film = new Film();
+            film.setName("Film " + id);
+            film.setDescription("Description of film " + id);
+            film.setReleaseDate(releaseDate(id));
+            film.setDuration(90 + (int) (id % 60));
+            film.setMpaId(mpa(id));
+            film.setGenreIds(genres(id));
+            filmStorage.save(film);
+        }
+        likes.forEach(like -> filmStorage.addLike(like[0], like[1]));
+        friendships.forEach(friendship -> userStorage.addFriend(friendship[0], friendship[1]));
+    }
+
+    private static Set<Long> distinct(Random random, int count, int bound, long excluded) {
+        Set<Long> ids = new HashSet<>();
+        while (ids.size() < count) {
+            long id = 1 + random.nextInt(bound);
+            if (id != excluded) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static List<Object[]> toRows(List<long[]> pairs) {
+        List<Object[]> rows = new ArrayList<>(pairs.size());
+        for (long[] pair : pairs) {
+            rows.add(new Object[]{pair[0], pair[1]});
+        }
+        return rows;
+    }
+
+    private static LocalDate birthday(long id) {
+        return LocalDate.of(1960, 1, 1).plusDays(id % 15000);
+    }
+
+    private static LocalDate releaseDate(long id) {
+        return LocalDate.of(1950, 1, 1).plusDays(id * 7 % 27000);
+    }
+
+    private static int mpa(long id) {
+        return 1 + (int) (id % MPA);
+    }
+
+    private static Set<Integer> genres(long id) {
+        Set<Integer> genres = new HashSet<>();
+        genres.add(1 + (int) (id % GENRES));
+        genres.add(1 + (int) (id / 7 % GENRES));
+        return genres;
+    }
+}
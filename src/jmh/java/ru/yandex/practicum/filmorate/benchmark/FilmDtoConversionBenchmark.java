@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilmDtoConversionBenchmark {
+
+    @Param({"1000"})
+    private int users;
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"20"})
+    private int likesPerFilm;
+
+    private ConfigurableApplicationContext context;
+    private FilmService filmService;
+    private List<Film> loadedFilms;
+    private Map<Integer, MpaDto> mpaMap;
+    private Map<Integer, GenreDto> genreMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new BenchmarkDataset(users, films, likesPerFilm, 0).startApplication();
+        filmService = context.getBean(FilmService.class);
+        loadedFilms = context.getBean("filmDbStorage", FilmStorage.class).findAll();
+        mpaMap = context.getBean(MpaStorage.class).getAllMpa().stream()
+                .collect(Collectors.toMap(MpaDto::getId, m -> m));
+        genreMap = context.getBean(GenreStorage.class).getAllGenres().stream()
+                .collect(Collectors.toMap(GenreDto::getId, g -> g));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void mapAllToDto(Blackhole blackhole) {
+        for (Film film : loadedFilms) {
+            blackhole.consume(FilmMapper.toDto(film, mpaMap, genreMap));
+        }
+    }
+
+    @Benchmark
+    public FilmDto serviceFindById() {
+        return filmService.findById(1 + ThreadLocalRandom.current().nextLong(films));
+    }
+
+    @Benchmark
+    public List<FilmDto> serviceGetPopular() {
+        return filmService.getPopular(10);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.InMemoryStorageOptions;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilmStorageBenchmark {
+
+    @Param({"db", "memory", "snapshot"})
+    private String storage;
+
+    @Param({"1000"})
+    private int users;
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"20"})
+    private int likesPerFilm;
+
+    private ConfigurableApplicationContext context;
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDataset dataset = new BenchmarkDataset(users, films, likesPerFilm, 0);
+        if ("db".equals(storage)) {
+            context = dataset.startApplication();
+            filmStorage = context.getBean("filmDbStorage", FilmStorage.class);
+        } else {
+            InMemoryFilmStorage inMemoryFilmStorage = "snapshot".equals(storage)
+                    ? new InMemoryFilmStorage(InMemoryStorageOptions.defaults().readOptimized(Duration.ofMillis(100)))
+                    : new InMemoryFilmStorage();
+            dataset.seed(inMemoryFilmStorage, new InMemoryUserStorage());
+            inMemoryFilmStorage.publishSnapshot();
+            filmStorage = inMemoryFilmStorage;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (filmStorage instanceof InMemoryFilmStorage inMemoryFilmStorage) {
+            inMemoryFilmStorage.close();
+        }
+    }
+
+    @Benchmark
+    public List<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Film findById() {
+        return filmStorage.findById(1 + ThreadLocalRandom.current().nextLong(films));
+    }
+
+    @Benchmark
+    public List<Film> getPopular() {
+        return filmStorage.getPopular(10);
+    }
+}
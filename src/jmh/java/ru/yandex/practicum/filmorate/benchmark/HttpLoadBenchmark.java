@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный HTTP-тест: приложение на пуле платформенных потоков Tomcat и на виртуальных потоках
+ * с ограничением допуска к пулу соединений под одинаковым числом одновременных клиентов.
+ * Каждый клиент в замкнутом цикле отправляет запрос из смеси чтений и ждёт ответа.
+ * Печатает пропускную способность, перцентили задержки и число отказов (503) и ошибок.
+ * <p>
+ * Параметры задаются системными свойствами: {@code load.modes} (platform,virtual), {@code load.clients}
+ * (1000,10000), {@code load.warmup} и {@code load.seconds} — прогрев и замер в секундах.
+ */
+public final class HttpLoadBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int FILMS = 20_000;
+
+    private HttpLoadBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = System.getProperty("load.modes", "platform,virtual").split(",");
+        int[] clients = Arrays.stream(System.getProperty("load.clients", "1000,10000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup", 5));
+        Duration measure = Duration.ofSeconds(Long.getLong("load.seconds", 20));
+        int maxClients = Arrays.stream(clients).max().orElse(1);
+
+        BenchmarkDataset dataset = new BenchmarkDataset(USERS, FILMS, 20, 20);
+        List<String> report = new ArrayList<>();
+        for (String mode : modes) {
+            boolean virtual = "virtual".equals(mode);
+            try (ConfigurableApplicationContext context = dataset.startApplication(WebApplicationType.SERVLET,
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + virtual,
+                    "--filmorate.datasource.admission-limit.enabled=" + virtual,
+                    "--server.tomcat.max-connections=" + (maxClients + 100),
+                    "--server.tomcat.accept-count=" + maxClients)) {
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                for (int clientCount : clients) {
+                    Result result = run(baseUrl, clientCount, warmup, measure);
+                    report.add(result.format(mode, clientCount, measure));
+                    System.out.println(report.get(report.size() - 1));
+                }
+            }
+        }
+
+        System.out.printf("%n%-9s %8s %10s %9s %9s %9s %9s %8s %8s%n",
+                "mode", "clients", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "503", "errors");
+        report.forEach(System.out::println);
+    }
+
+    private static Result run(String baseUrl, int clients, Duration warmup, Duration measure)
+            throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureTo = measureFrom + measure.toNanos();
+        List<Recorder> recorders = new ArrayList<>(clients);
+        LongAdder unavailable = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                executor.submit(() -> {
+                    while (System.nanoTime() < measureTo) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + nextPath()))
+                                .timeout(Duration.ofSeconds(60))
+                                .GET()
+                                .build();
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        long end = System.nanoTime();
+                        if (start < measureFrom || end > measureTo) {
+                            continue;
+                        }
+                        if (status == 200) {
+                            recorder.add(end - start);
+                        } else if (status == 503) {
+                            unavailable.increment();
+                        } else {
+                            errors.increment();
+                        }
+                    }
+                });
+            }
+        }
+
+        long[] latencies = Recorder.merge(recorders);
+        Arrays.sort(latencies);
+        return new Result(latencies, unavailable.sum(), errors.sum());
+    }
+
+    /**
+     * Смесь чтений: фильм по id, страница каталога, пользователь и общие друзья.
+     */
+    private static String nextPath() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (random.nextInt(4)) {
+            case 0 -> "/films/" + (1 + random.nextInt(FILMS));
+            case 1 -> "/films?after=" + random.nextInt(FILMS) + "&limit=20";
+            case 2 -> "/users/" + (1 + random.nextInt(USERS));
+            default -> "/users/" + (1 + random.nextInt(USERS)) + "/friends/common/" + (1 + random.nextInt(USERS));
+        };
+    }
+
+    private static final class Recorder {
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        static long[] merge(List<Recorder> recorders) {
+            long[] merged = new long[recorders.stream().mapToInt(r -> r.size).sum()];
+            int offset = 0;
+            for (Recorder recorder : recorders) {
+                System.arraycopy(recorder.values, 0, merged, offset, recorder.size);
+                offset += recorder.size;
+            }
+            return merged;
+        }
+    }
+
+    private record Result(long[] sortedLatencies, long unavailable, long errors) {
+
+        String format(String mode, int clients, Duration measure) {
+            return String.format("%-9s %8d %10.0f %9.2f %9.2f %9.2f %9.2f %8d %8d", mode, clients,
+                    sortedLatencies.length / (double) measure.toSeconds(),
+                    percentile(0.5), percentile(0.99), percentile(0.999),
+                    sortedLatencies.length == 0 ? 0 : sortedLatencies[sortedLatencies.length - 1] / 1e6,
+                    unavailable, errors);
+        }
+
+        private double percentile(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(p * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
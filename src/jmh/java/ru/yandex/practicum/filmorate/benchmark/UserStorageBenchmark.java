@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserStorageBenchmark {
+
+    @Param({"db", "memory"})
+    private String storage;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"100"})
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private UserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDataset dataset = new BenchmarkDataset(users, 0, 0, friendsPerUser);
+        if ("db".equals(storage)) {
+            context = dataset.startApplication();
+            userStorage = context.getBean(UserStorage.class);
+        } else {
+            InMemoryUserStorage inMemoryUserStorage = new InMemoryUserStorage();
+            dataset.seed(new InMemoryFilmStorage(), inMemoryUserStorage);
+            userStorage = inMemoryUserStorage;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public User findById() {
+        return userStorage.findById(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return userStorage.getFriends(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        return userStorage.getCommonFriends(randomUserId(), randomUserId());
+    }
+
+    private long randomUserId() {
+        return 1 + ThreadLocalRandom.current().nextLong(users);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.genre.CachedGenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.CachedMpaStorage;
+
+/**
+ * Счётчики попаданий и промахов кэшей справочников.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheMetrics implements MeterBinder {
+
+    private final CachedGenreStorage genreStorage;
+    private final CachedMpaStorage mpaStorage;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.cache.hits", genreStorage, CachedGenreStorage::getHits)
+                .tag("cache", "genre").register(registry);
+        FunctionCounter.builder("filmorate.cache.misses", genreStorage, CachedGenreStorage::getMisses)
+                .tag("cache", "genre").register(registry);
+        FunctionCounter.builder("filmorate.cache.hits", mpaStorage, CachedMpaStorage::getHits)
+                .tag("cache", "mpa").register(registry);
+        FunctionCounter.builder("filmorate.cache.misses", mpaStorage, CachedMpaStorage::getMisses)
+                .tag("cache", "mpa").register(registry);
+    }
+}
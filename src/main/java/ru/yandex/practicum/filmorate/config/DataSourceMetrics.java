@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Метрики обёрток пула из {@link DataSourceTuning}: число медленных SQL-запросов и очередь за соединением.
+ * Обёртки вложены друг в друга, поэтому ищутся по всей цепочке делегатов.
+ */
+@Component
+@RequiredArgsConstructor
+public class DataSourceMetrics implements MeterBinder {
+
+    private final DataSource dataSource;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        DataSource current = dataSource;
+        while (current instanceof DelegatingDataSource delegating) {
+            if (current instanceof SlowQueryDataSource slowQueries) {
+                FunctionCounter.builder("filmorate.sql.slow", slowQueries, SlowQueryDataSource::getSlowQueries)
+                        .description("Запросов дольше порога filmorate.sql.slow-query.threshold-ms")
+                        .register(registry);
+            }
+            if (current instanceof AdmissionLimitedDataSource admission) {
+                Gauge.builder("filmorate.sql.admission.waiting", admission, AdmissionLimitedDataSource::getWaiting)
+                        .description("Потоков в очереди за соединением")
+                        .register(registry);
+                FunctionCounter.builder("filmorate.sql.admission.rejected", admission,
+                                AdmissionLimitedDataSource::getRejected)
+                        .description("Запросов, не дождавшихся соединения (ответ 503)")
+                        .register(registry);
+            }
+            current = delegating.getTargetDataSource();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Настраивает пул соединений под машину и при необходимости оборачивает его ограничением допуска
+ * и логированием медленных запросов.
+ * Размер пула выводится из числа ядер (ядра * 2 + 1), если он не задан явно
+ * через {@code spring.datasource.hikari.maximum-pool-size}.
+ */
+@Slf4j
+@Component
+public class DataSourceTuning implements BeanPostProcessor, EnvironmentAware {
+
+    private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HikariDataSource dataSource)) {
+            return bean;
+        }
+        if (environment.getProperty("filmorate.datasource.auto-pool-size", Boolean.class, false)
+                && !environment.containsProperty("spring.datasource.hikari.maximum-pool-size")) {
+            int poolSize = poolSizeFor(Runtime.getRuntime().availableProcessors());
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMinimumIdle(poolSize);
+            log.info("Размер пула соединений выбран по числу ядер: {}", poolSize);
+        }
+        DataSource target = dataSource;
+        if (environment.getProperty("filmorate.datasource.admission-limit.enabled", Boolean.class, false)) {
+            long timeoutMs = environment.getProperty("filmorate.datasource.admission-limit.timeout-ms", Long.class,
+                    1000L);
+            // Пока пул не запущен, незаданный размер равен -1; Hikari подставит свои 10 соединений при старте
+            int poolSize = dataSource.getMaximumPoolSize() > 0
+                    ? dataSource.getMaximumPoolSize()
+                    : HIKARI_DEFAULT_POOL_SIZE;
+            target = new AdmissionLimitedDataSource(dataSource, poolSize, timeoutMs);
+            log.info("Допуск к пулу соединений ограничен: не больше {} потоков, ожидание до {} мс",
+                    poolSize, timeoutMs);
+        }
+        if (environment.getProperty("filmorate.sql.slow-query.enabled", Boolean.class, false)) {
+            return new SlowQueryDataSource(target,
+                    environment.getProperty("filmorate.sql.slow-query.threshold-ms", Long.class, 100L),
+                    environment.getProperty("filmorate.sql.slow-query.sample-rate", Double.class, 1.0));
+        }
+        return target;
+    }
+
+    static int poolSizeFor(int cores) {
+        return cores * 2 + 1;
+    }
+}
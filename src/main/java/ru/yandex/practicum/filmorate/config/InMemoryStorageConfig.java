@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.storage.InMemoryStorageOptions;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Хранилища фильмов и пользователей в памяти вместо БД: {@code filmorate.storage.type=memory}
+ * или профиль {@code memory}. Жанры и рейтинги по-прежнему читаются из БД.
+ * Без {@code filmorate.storage.memory.path} данные живут до остановки приложения,
+ * без {@code filmorate.storage.memory.publish-interval-ms} списки фильмов читаются из карты напрямую.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class InMemoryStorageConfig {
+
+    @Bean
+    public InMemoryStorageOptions inMemoryStorageOptions(
+            @Value("${filmorate.storage.memory.path:}") String path,
+            @Value("${filmorate.storage.memory.snapshot-interval-ms:60000}") long snapshotIntervalMs,
+            @Value("${filmorate.storage.memory.publish-interval-ms:0}") long publishIntervalMs) {
+        InMemoryStorageOptions options = InMemoryStorageOptions.defaults();
+        if (!path.isBlank()) {
+            options = options.durable(Path.of(path), Duration.ofMillis(snapshotIntervalMs));
+        }
+        if (publishIntervalMs > 0) {
+            options = options.readOptimized(Duration.ofMillis(publishIntervalMs));
+        }
+        return options;
+    }
+
+    @Bean(destroyMethod = "close")
+    public InMemoryFilmStorage inMemoryFilmStorage(InMemoryStorageOptions options, InMemoryUserStorage userStorage) {
+        return new InMemoryFilmStorage(options, userStorage::exists);
+    }
+
+    @Bean(destroyMethod = "close")
+    public InMemoryUserStorage inMemoryUserStorage(InMemoryStorageOptions options) {
+        return new InMemoryUserStorage(options);
+    }
+}
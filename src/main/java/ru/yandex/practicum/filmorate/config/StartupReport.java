@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Печатает при старте фактически действующие настройки пула, H2 и логирования SQL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StartupReport {
+
+    private static final String H2_SETTINGS_SQL = """
+            SELECT SETTING_NAME, SETTING_VALUE
+            FROM INFORMATION_SCHEMA.SETTINGS
+            WHERE SETTING_NAME IN ('CACHE_SIZE', 'LOCK_MODE', 'WRITE_DELAY', 'MV_STORE')
+            """;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Environment environment;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("profiles", Arrays.toString(environment.getActiveProfiles()));
+        settings.put("cores", Runtime.getRuntime().availableProcessors());
+        try {
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            settings.put("url", hikari.getJdbcUrl());
+            settings.put("pool.max", hikari.getMaximumPoolSize());
+            settings.put("pool.minIdle", hikari.getMinimumIdle());
+            settings.put("pool.connectionTimeoutMs", hikari.getConnectionTimeout());
+        } catch (SQLException e) {
+            settings.put("url", environment.getProperty("spring.datasource.url"));
+        }
+        try {
+            jdbcTemplate.query(H2_SETTINGS_SQL, rs -> {
+                settings.put("h2." + rs.getString("SETTING_NAME"), rs.getString("SETTING_VALUE"));
+            });
+        } catch (DataAccessException e) {
+            log.debug("Настройки H2 недоступны: {}", e.getMessage());
+        }
+        settings.put("sql.slowQuery", dataSource instanceof SlowQueryDataSource
+                ? environment.getProperty("filmorate.sql.slow-query.threshold-ms", "100") + " мс, выборка "
+                + environment.getProperty("filmorate.sql.slow-query.sample-rate", "1.0")
+                : "выключено");
+        settings.put("sql.debugLogging", environment.getProperty("logging.level.org.springframework.jdbc.core", "INFO"));
+        log.info("Действующие настройки: {}", settings);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеряет методы хранилищ фильмов, пользователей, жанров и MPA:
+ * время выполнения ({@code filmorate.storage}) и число строк в возвращённом списке ({@code filmorate.storage.rows}).
+ * Теги: {@code storage} — класс реализации, {@code method} — имя метода, {@code outcome} — success/error.
+ * <p>
+ * Версии, проверки существования, счётчик лайков и подписка на лайки не замеряются: это обращения к памяти,
+ * которые вызываются по разу на фильм в ответе, и таймер стоил бы дороже самого вызова.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class StorageMetricsAspect {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rows = new ConcurrentHashMap<>();
+
+    @Around("(execution(* ru.yandex.practicum.filmorate.storage.film.FilmStorage.*(..))"
+            + " || execution(* ru.yandex.practicum.filmorate.storage.user.UserStorage.*(..))"
+            + " || execution(* ru.yandex.practicum.filmorate.storage.genre.GenreStorage.*(..))"
+            + " || execution(* ru.yandex.practicum.filmorate.storage.mpa.MpaStorage.*(..)))"
+            + " && !execution(* version(..)) && !execution(* exists*(..))"
+            + " && !execution(* likeCount(..)) && !execution(* add*Listener(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String storage = AopUtils.getTargetClass(joinPoint.getTarget()).getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        String key = storage + '.' + method;
+        Meters meter = meters.computeIfAbsent(key, k -> new Meters(timer(storage, method, "success"),
+                timer(storage, method, "error")));
+
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            meter.success().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (result instanceof Collection<?> collection) {
+                rows.computeIfAbsent(key, k -> rows(storage, method)).record(collection.size());
+            }
+            return result;
+        } catch (Throwable e) {
+            meter.error().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private DistributionSummary rows(String storage, String method) {
+        return DistributionSummary.builder("filmorate.storage.rows")
+                .description("Строк возвращено методом хранилища")
+                .tags("storage", storage, "method", method)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private Timer timer(String storage, String method, String outcome) {
+        return Timer.builder("filmorate.storage")
+                .description("Время выполнения метода хранилища")
+                .tags("storage", storage, "method", method, "outcome", outcome)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private record Meters(Timer success, Timer error) {
+    }
+}
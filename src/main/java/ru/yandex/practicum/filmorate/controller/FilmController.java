@@ -1,9 +1,16 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmCreateDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.service.FilmEventBroadcaster;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.List;
@@ -13,16 +20,51 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int MAX_QUERY_LENGTH = 200;
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final JsonResponseCache responseCache;
+    private final FilmEventBroadcaster eventBroadcaster;
 
     @GetMapping
-    public List<FilmDto> findAll() {
-        return filmService.findAll();
+    public ResponseEntity<byte[]> findAll(@RequestParam(required = false) Long after,
+                                          @RequestParam(required = false) Integer limit,
+                                          WebRequest request) {
+        if (after == null && limit == null) {
+            return responseCache.respondEncoded(request, "films", filmService.version(), filmService::findAllJson);
+        }
+        return json(filmService.findPageJson(after, pageSize(limit)));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody stream() {
+        return StreamingJson.pages(objectMapper, filmService::findPage, FilmDto::getId);
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events() {
+        return eventBroadcaster.subscribe();
+    }
+
+    @GetMapping("/search")
+    public List<FilmDto> search(@RequestParam(required = false) String q,
+                                @RequestParam(defaultValue = "20") int limit) {
+        if (q == null || q.isBlank() || q.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("q должен быть непустым и не длиннее " + MAX_QUERY_LENGTH + " символов");
+        }
+        if (limit <= 0 || limit > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_SEARCH_RESULTS);
+        }
+        return filmService.search(q, limit);
     }
 
     @GetMapping("/{id}")
-    public FilmDto findById(@PathVariable Long id) {
-        return filmService.findById(id);
+    public ResponseEntity<byte[]> findById(@PathVariable Long id) {
+        return json(filmService.findByIdJson(id));
     }
 
     @PostMapping
@@ -46,10 +88,30 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<FilmDto> getPopular(@RequestParam(defaultValue = "10") int count) {
+    public ResponseEntity<byte[]> getPopular(@RequestParam(defaultValue = "10") int count,
+                                             @RequestParam(required = false) Integer genreId,
+                                             @RequestParam(required = false) Integer mpaId,
+                                             @RequestParam(required = false) Integer year,
+                                             WebRequest request) {
         if (count <= 0) {
             throw new IllegalArgumentException("count должен быть больше 0");
         }
-        return filmService.getPopular(count);
+        String key = "films/popular?count=" + count + "&genreId=" + genreId + "&mpaId=" + mpaId + "&year=" + year;
+        return responseCache.respond(request, key, filmService.version(),
+                () -> filmService.getPopular(count, genreId, mpaId, year));
+    }
+
+    private static ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return limit;
     }
 }
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dto.ImportResult;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final ImportService importService;
+
+    @PostMapping("/films")
+    public ImportResult importFilms(InputStream body) {
+        return importService.importFilms(body);
+    }
+
+    @PostMapping("/users")
+    public ImportResult importUsers(InputStream body) {
+        return importService.importUsers(body);
+    }
+
+    @PostMapping("/likes")
+    public ImportResult importLikes(InputStream body) {
+        return importService.importLikes(body);
+    }
+
+    @PostMapping("/friendships")
+    public ImportResult importFriendships(InputStream body) {
+        return importService.importFriendships(body);
+    }
+}
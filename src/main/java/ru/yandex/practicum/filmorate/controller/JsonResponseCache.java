@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Условные GET по версии хранилища: строгий ETag из версии и, если он не совпал с {@code If-None-Match},
+ * готовые байты JSON, сериализованные для этой версии. Пока версия не изменилась, ответ не ходит ни в БД,
+ * ни в Jackson.
+ * <p>
+ * В ETag входит метка запуска приложения: счётчики версий начинаются заново после рестарта. Входит в него
+ * и ключ ответа: версия общая для всех ответов хранилища, и без ключа ETag одного ресурса подошёл бы другому,
+ * в том числе несуществующему, — вместо 404 вернулся бы 304.
+ */
+@Component
+@RequiredArgsConstructor
+class JsonResponseCache {
+
+    private static final int MAX_ENTRIES = 1024;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ObjectMapper objectMapper;
+    private final Map<String, CachedBody> bodies = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedBody> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Версию нужно прочитать до загрузки данных: тогда закэшированный ответ не старше своей версии.
+     */
+    ResponseEntity<byte[]> respond(WebRequest request, String key, long version, Supplier<?> loader) {
+        return respondEncoded(request, key, version, () -> {
+            try {
+                return objectMapper.writeValueAsBytes(loader.get());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Не удалось сериализовать ответ", e);
+            }
+        });
+    }
+
+    /**
+     * То же, что {@link #respond}, для ответов, которые уже собраны в JSON.
+     */
+    ResponseEntity<byte[]> respondEncoded(WebRequest request, String key, long version, Supplier<byte[]> encoder) {
+        String etag = "\"" + epoch + "-" + version + "-" + key + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body(key, version, encoder));
+    }
+
+    private byte[] body(String key, long version, Supplier<byte[]> encoder) {
+        CachedBody cached;
+        synchronized (bodies) {
+            cached = bodies.get(key);
+        }
+        if (cached != null && cached.version() == version) {
+            return cached.bytes();
+        }
+        byte[] bytes = encoder.get();
+        synchronized (bodies) {
+            CachedBody current = bodies.get(key);
+            if (current == null || current.version() < version) {
+                bodies.put(key, new CachedBody(version, bytes));
+            }
+        }
+        return bytes;
+    }
+
+    private record CachedBody(long version, byte[] bytes) {
+    }
+}
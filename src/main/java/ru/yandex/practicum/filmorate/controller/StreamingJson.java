@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Потоковая выдача JSON-массива постранично (keyset по id): в памяти держится только одна страница.
+ */
+final class StreamingJson {
+
+    static final int PAGE_SIZE = 500;
+
+    private StreamingJson() {
+    }
+
+    static <T> StreamingResponseBody pages(ObjectMapper objectMapper,
+                                           BiFunction<Long, Integer, List<T>> pageLoader,
+                                           Function<T, Long> idExtractor) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                Long afterId = null;
+                List<T> page;
+                do {
+                    page = pageLoader.apply(afterId, PAGE_SIZE);
+                    for (T item : page) {
+                        generator.writeObject(item);
+                    }
+                    generator.flush();
+                    if (!page.isEmpty()) {
+                        afterId = idExtractor.apply(page.get(page.size() - 1));
+                    }
+                } while (page.size() == PAGE_SIZE);
+                generator.writeEndArray();
+            }
+        };
+    }
+}
@@ -1,8 +1,15 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.List;
@@ -12,11 +19,27 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_RECOMMENDATIONS = 100;
+
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final JsonResponseCache responseCache;
 
     @GetMapping
-    public List<User> findAll() {
-        return userService.findAll();
+    public List<User> findAll(@RequestParam(required = false) Long after,
+                              @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return userService.findAll();
+        }
+        return userService.findPage(after, pageSize(limit));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody stream() {
+        return StreamingJson.pages(objectMapper, userService::findPage, User::getId);
     }
 
     @GetMapping("/{id}")
@@ -45,12 +68,39 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable Long id) {
-        return userService.getFriends(id);
+    public ResponseEntity<byte[]> getFriends(@PathVariable Long id, WebRequest request) {
+        return responseCache.respond(request, "users/" + id + "/friends", userService.version(),
+                () -> userService.getFriends(id));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("count должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<FilmDto> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        if (count <= 0 || count > MAX_RECOMMENDATIONS) {
+            throw new IllegalArgumentException("count должен быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
+        return filmService.getRecommendations(id, count);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
 }
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+@Data
+public class FriendshipImportDto {
+    private Long userId;
+    private Long friendId;
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImportResult {
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private long processed;
+    private long imported;
+    private long skipped;
+    private long failed;
+    private List<LineError> errors = new ArrayList<>();
+
+    public void fail(long line, String error) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new LineError(line, error));
+        }
+    }
+
+    public record LineError(long line, String error) {
+    }
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+@Data
+public class LikeImportDto {
+    private Long filmId;
+    private Long userId;
+}
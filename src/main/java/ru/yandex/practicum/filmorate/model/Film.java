@@ -13,7 +13,11 @@ public class Film {
     private String description;
     private LocalDate releaseDate;
     private int duration;
-    private Set<Long> likes = new HashSet<>();
+    private SortedLongSet likes = new SortedLongSet();
     private Integer mpaId;
     private Set<Integer> genreIds = new HashSet<>();
+
+    public void setLikes(Set<Long> likes) {
+        this.likes = likes instanceof SortedLongSet sorted ? sorted : new SortedLongSet(likes);
+    }
 }
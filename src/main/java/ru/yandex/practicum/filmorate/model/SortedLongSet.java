@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Компактное множество идентификаторов: отсортированный массив {@code long[]} без упаковки в {@code Long}.
+ * Занимает около 8 байт на элемент против ~48 у {@code HashSet<Long>}; поиск — бинарный,
+ * обход — по возрастанию. Не потокобезопасно.
+ */
+public class SortedLongSet extends AbstractSet<Long> {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values;
+    private int size;
+
+    public SortedLongSet() {
+        this.values = EMPTY;
+    }
+
+    /**
+     * Копия без обхода и упаковки: массив копируется целиком.
+     */
+    public SortedLongSet(SortedLongSet source) {
+        this.values = Arrays.copyOf(source.values, source.size);
+        this.size = source.size;
+    }
+
+    public SortedLongSet(Collection<Long> source) {
+        this.values = new long[source.size()];
+        for (Long value : source) {
+            add(value.longValue());
+        }
+    }
+
+    public boolean add(long value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public boolean remove(long value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public void trimToSize() {
+        if (values.length > size) {
+            values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long l && contains(l.longValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Long l && remove(l.longValue());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        values = EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return values[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+}
@@ -3,7 +3,6 @@ package ru.yandex.practicum.filmorate.model;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 @Data
@@ -13,5 +12,9 @@ public class User {
     private String login;
     private String name;
     private LocalDate birthday;
-    private Set<Long> friends = new HashSet<>();
+    private SortedLongSet friends = new SortedLongSet();
+
+    public void setFriends(Set<Long> friends) {
+        this.friends = friends instanceof SortedLongSet sorted ? sorted : new SortedLongSet(friends);
+    }
 }
@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рассылка изменений лайков подписчикам {@code GET /films/events}.
+ * <p>
+ * Хранилище сообщает о лайке в момент, когда применило его (в том числе при отложенной записи и массовой
+ * загрузке), и фильм только отмечается в множестве изменённых. Раз в такт множество забирается целиком,
+ * и каждый фильм попадает в одно событие с текущим числом лайков, сколько бы лайков ни пришло за такт.
+ * Событие сериализуется один раз и кладётся в ограниченный буфер каждого подписчика; в сокет его пишет
+ * собственный виртуальный поток подписчика. Подписчик с переполненным буфером отключается:
+ * ни лайки, ни рассылка не ждут медленного клиента.
+ */
+@Slf4j
+@Service
+public class FilmEventBroadcaster implements MeterBinder {
+
+    private final FilmStorage filmStorage;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final Set<Long> changedFilms = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public FilmEventBroadcaster(FilmStorage filmStorage, ObjectMapper objectMapper,
+                                @Value("${filmorate.events.buffer-size:16}") int bufferSize) {
+        this.filmStorage = filmStorage;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+    }
+
+    @PostConstruct
+    public void listenToLikes() {
+        filmStorage.addLikesListener(changedFilms::add);
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(bufferSize));
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        subscriber.start();
+        return emitter;
+    }
+
+    /**
+     * Останавливает и поток отправки: без событий он так и ждал бы в {@code take()}.
+     */
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.stop();
+    }
+
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.events.subscribers", this, FilmEventBroadcaster::getSubscribers)
+                .description("Подписчиков GET /films/events")
+                .register(registry);
+        FunctionCounter.builder("filmorate.events.dropped", this, FilmEventBroadcaster::getDropped)
+                .description("Подписчиков, отключённых из-за переполненного буфера")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.events.tick-ms:1000}")
+    public void tick() {
+        List<LikeUpdate> updates = new ArrayList<>();
+        for (Iterator<Long> it = changedFilms.iterator(); it.hasNext(); ) {
+            long filmId = it.next();
+            it.remove();
+            updates.add(new LikeUpdate(filmId, filmStorage.likeCount(filmId)));
+        }
+        if (updates.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(updates);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие", e);
+        }
+        broadcast(SseEmitter.event().name("likes").data(data, MediaType.APPLICATION_JSON).build());
+    }
+
+    /**
+     * Комментарий без данных: без него отключившийся клиент обнаруживается только при следующем лайке.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        if (!subscribers.isEmpty()) {
+            broadcast(SseEmitter.event().comment("ping").build());
+        }
+    }
+
+    /**
+     * Подписки закрываются до остановки веб-сервера: открытые асинхронные запросы задерживают её.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void close() {
+        subscribers.forEach(Subscriber::stop);
+        subscribers.clear();
+    }
+
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.buffer().offer(event)) {
+                subscribers.remove(subscriber);
+                subscriber.stop();
+                log.info("Подписчик на события фильмов отключён: буфер из {} событий переполнен", bufferSize);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private record LikeUpdate(long filmId, long likes) {
+    }
+
+    private static final class Subscriber {
+
+        private static final Set<ResponseBodyEmitter.DataWithMediaType> CLOSE = Set.of();
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> buffer;
+        private final Thread sender;
+
+        Subscriber(SseEmitter emitter, BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> buffer) {
+            this.emitter = emitter;
+            this.buffer = buffer;
+            this.sender = Thread.ofVirtual().name("film-events-sender").unstarted(this::sendLoop);
+        }
+
+        BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> buffer() {
+            return buffer;
+        }
+
+        void start() {
+            sender.start();
+        }
+
+        /**
+         * Непрочитанные события отбрасываются, соединение закрывает сам поток отправки, когда допишет
+         * текущее событие: он может быть занят записью в сокет медленного клиента.
+         */
+        void stop() {
+            do {
+                buffer.clear();
+            } while (!buffer.offer(CLOSE));
+        }
+
+        private void sendLoop() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                while ((event = buffer.take()) != CLOSE) {
+                    emitter.send(event);
+                }
+                emitter.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } catch (IOException e) {
+                // Клиент отключился: контейнер сам сообщит об ошибке и завершит запрос
+            } catch (RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Готовый JSON отдельных фильмов. Запись хранит версию фильма из {@code FilmStorage.version(id)}, для которой
+ * она сериализована, и считается действительной, только пока версия фильма та же.
+ * <p>
+ * При переполнении новая запись вытесняет произвольную старую: чтение остаётся без блокировок, а вытесненный
+ * фильм просто сериализуется заново при следующем обращении.
+ */
+class FilmJsonCache {
+
+    private static final int MAX_ENTRIES = 200_000;
+
+    private final Map<Long, Fragment> fragments = new ConcurrentHashMap<>();
+
+    byte[] get(long filmId, long filmVersion) {
+        Fragment fragment = fragments.get(filmId);
+        return fragment != null && fragment.version() == filmVersion ? fragment.json() : null;
+    }
+
+    void put(long filmId, long filmVersion, byte[] json) {
+        if (fragments.size() >= MAX_ENTRIES && !fragments.containsKey(filmId)) {
+            Iterator<Long> eldest = fragments.keySet().iterator();
+            if (eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        fragments.merge(filmId, new Fragment(filmVersion, json),
+                (current, next) -> next.version() >= current.version() ? next : current);
+    }
+
+    void remove(long filmId) {
+        fragments.remove(filmId);
+    }
+
+    private record Fragment(long version, byte[] json) {
+    }
+}
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.*;
@@ -12,6 +15,7 @@ import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.io.ByteArrayOutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -23,6 +27,21 @@ public class FilmService {
     private final UserStorage userStorage;
     private final GenreStorage genreStorage;
     private final MpaStorage mpaStorage;
+    private final ObjectMapper objectMapper;
+    private final FilmJsonCache jsonCache = new FilmJsonCache();
+
+    /**
+     * Лайки удаляемого пользователя снимаются через хранилище фильмов, а не каскадом БД.
+     */
+    @PostConstruct
+    public void removeLikesOfDeletedUsers() {
+        userStorage.addDeleteListener(filmStorage::removeLikesOf);
+    }
+
+    @PostConstruct
+    public void forgetJsonOfDeletedFilms() {
+        filmStorage.addDeleteListener(jsonCache::remove);
+    }
 
     private FilmDto toDto(Film film, Map<Integer, MpaDto> mpaMap, Map<Integer, GenreDto> genreMap) {
         return FilmMapper.toDto(film, mpaMap, genreMap);
@@ -33,11 +52,77 @@ public class FilmService {
         return convertFilmsToDtos(films);
     }
 
+    public long version() {
+        return filmStorage.version();
+    }
+
+    public List<FilmDto> findPage(Long afterId, int limit) {
+        List<Film> films = filmStorage.findPage(afterId, limit);
+        return convertFilmsToDtos(films);
+    }
+
     public FilmDto findById(Long id) {
         Film film = filmStorage.findById(id);
         return convertFilmToDto(film);
     }
 
+    /**
+     * JSON фильма. Если фильм не менялся с прошлой сериализации, ответ берётся из кэша без обращения к БД.
+     */
+    public byte[] findByIdJson(Long id) {
+        byte[] cached = jsonCache.get(id, filmStorage.version(id));
+        if (cached != null) {
+            return cached;
+        }
+        long version = filmStorage.version();
+        return toJson(filmStorage.findById(id), version, new ReferenceData());
+    }
+
+    public byte[] findAllJson() {
+        long version = filmStorage.version();
+        return toJsonArray(filmStorage.findAll(), version);
+    }
+
+    public byte[] findPageJson(Long afterId, int limit) {
+        long version = filmStorage.version();
+        return toJsonArray(filmStorage.findPage(afterId, limit), version);
+    }
+
+    private byte[] toJsonArray(List<Film> films, long versionBeforeLoad) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(films.size(), 4096) * 256 + 2);
+        ReferenceData references = new ReferenceData();
+        out.write('[');
+        for (int i = 0; i < films.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(toJson(films.get(i), versionBeforeLoad, references));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * Готовый JSON фильма из кэша или свежая сериализация. Новый фрагмент кэшируется, только если фильм
+     * не менялся после {@code versionBeforeLoad}: иначе загруженные данные могут быть старше его версии.
+     */
+    private byte[] toJson(Film film, long versionBeforeLoad, ReferenceData references) {
+        long filmVersion = filmStorage.version(film.getId());
+        byte[] json = jsonCache.get(film.getId(), filmVersion);
+        if (json != null) {
+            return json;
+        }
+        try {
+            json = objectMapper.writeValueAsBytes(references.toDto(film));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать фильм с id=" + film.getId(), e);
+        }
+        if (filmVersion <= versionBeforeLoad) {
+            jsonCache.put(film.getId(), filmVersion, json);
+        }
+        return json;
+    }
+
     public FilmDto create(FilmCreateDto filmCreateDto) {
         Film film = FilmMapper.toFilm(filmCreateDto);
         validateFilm(film);
@@ -59,6 +144,25 @@ public class FilmService {
         return convertFilmsToDtos(films);
     }
 
+    public List<FilmDto> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        if (genreId == null && mpaId == null && year == null) {
+            return getPopular(count);
+        }
+        List<Film> films = filmStorage.getPopular(count, genreId, mpaId, year);
+        return convertFilmsToDtos(films);
+    }
+
+    public List<FilmDto> search(String query, int limit) {
+        return convertFilmsToDtos(filmStorage.search(query, limit));
+    }
+
+    public List<FilmDto> getRecommendations(Long userId, int count) {
+        if (!userStorage.exists(userId)) {
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
+        return convertFilmsToDtos(filmStorage.getRecommendations(userId, count));
+    }
+
     private List<FilmDto> convertFilmsToDtos(List<Film> films) {
         if (films.isEmpty()) {
             return Collections.emptyList();
@@ -96,14 +200,10 @@ public class FilmService {
     }
 
     public void addLike(Long filmId, Long userId) {
-        userStorage.findById(userId);
-        filmStorage.findById(filmId);
         filmStorage.addLike(filmId, userId);
     }
 
     public void removeLike(Long filmId, Long userId) {
-        userStorage.findById(userId);
-        filmStorage.findById(filmId);
         filmStorage.removeLike(filmId, userId);
     }
 
@@ -123,7 +223,7 @@ public class FilmService {
         return mpaStorage.getMpaById(id);
     }
 
-    private void validateFilm(Film film) {
+    void validateFilm(Film film) {
         if (film.getName() == null || film.getName().isBlank()) {
             throw new ValidationException("Название не может быть пустым");
         }
@@ -155,4 +255,20 @@ public class FilmService {
             }
         }
     }
+
+    /**
+     * Справочники MPA и жанров, загружаемые при первой сериализации фильма в рамках запроса.
+     */
+    private final class ReferenceData {
+        private Map<Integer, MpaDto> mpaMap;
+        private Map<Integer, GenreDto> genreMap;
+
+        FilmDto toDto(Film film) {
+            if (mpaMap == null) {
+                mpaMap = mpaStorage.getAllMpa().stream().collect(Collectors.toMap(MpaDto::getId, m -> m));
+                genreMap = genreStorage.getAllGenres().stream().collect(Collectors.toMap(GenreDto::getId, g -> g));
+            }
+            return FilmService.this.toDto(film, mpaMap, genreMap);
+        }
+    }
 }
\ No newline at end of file
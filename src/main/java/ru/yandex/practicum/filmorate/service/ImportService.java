@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.FilmCreateDto;
+import ru.yandex.practicum.filmorate.dto.FriendshipImportDto;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dto.ImportResult;
+import ru.yandex.practicum.filmorate.dto.LikeImportDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка данных из NDJSON: одна JSON-запись на строку.
+ * Строки разбираются и проверяются по одной, в БД уходят пачками по {@value #BATCH_SIZE}.
+ * Ошибочные строки не прерывают загрузку, а попадают в отчёт с номером строки.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    public ImportResult importFilms(InputStream body) {
+        Set<Integer> mpaIds = mpaStorage.getAllMpa().stream().map(MpaDto::getId).collect(Collectors.toSet());
+        Set<Integer> genreIds = genreStorage.getAllGenres().stream().map(GenreDto::getId).collect(Collectors.toSet());
+
+        return importLines("фильмов", body, line -> {
+            Film film = FilmMapper.toFilm(objectMapper.readValue(line, FilmCreateDto.class));
+            if (film.getReleaseDate() == null) {
+                throw new ValidationException("Дата релиза обязательна");
+            }
+            filmService.validateFilm(film);
+            if (film.getMpaId() != null && !mpaIds.contains(film.getMpaId())) {
+                throw new NotFoundException("MPA с id=" + film.getMpaId() + " не найден");
+            }
+            for (Integer genreId : film.getGenreIds()) {
+                if (!genreIds.contains(genreId)) {
+                    throw new NotFoundException("Жанр с id=" + genreId + " не существует");
+                }
+            }
+            return film;
+        }, (batch, result) -> {
+            filmStorage.saveAll(values(batch));
+            result.setImported(result.getImported() + batch.size());
+        });
+    }
+
+    public ImportResult importUsers(InputStream body) {
+        return importLines("пользователей", body, line -> {
+            User user = objectMapper.readValue(line, User.class);
+            if (user.getBirthday() == null) {
+                throw new ValidationException("Дата рождения обязательна");
+            }
+            userService.validateUser(user);
+            user.setFriends(Set.of());
+            return user;
+        }, (batch, result) -> {
+            userStorage.saveAll(values(batch));
+            result.setImported(result.getImported() + batch.size());
+        });
+    }
+
+    public ImportResult importLikes(InputStream body) {
+        return importLines("лайков", body, line -> {
+            LikeImportDto like = objectMapper.readValue(line, LikeImportDto.class);
+            if (like.getFilmId() == null || like.getUserId() == null) {
+                throw new ValidationException("Нужны filmId и userId");
+            }
+            return like;
+        }, (batch, result) -> {
+            long[] filmIds = new long[batch.size()];
+            long[] userIds = new long[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                filmIds[i] = batch.get(i).value().getFilmId();
+                userIds[i] = batch.get(i).value().getUserId();
+            }
+            int[] added = filmStorage.addLikes(filmIds, userIds);
+            for (int i = 0; i < added.length; i++) {
+                if (added[i] > 0) {
+                    result.setImported(result.getImported() + 1);
+                } else if (!userStorage.exists(userIds[i])) {
+                    result.fail(batch.get(i).number(), "Пользователь с id=" + userIds[i] + " не найден");
+                } else if (!filmStorage.exists(filmIds[i])) {
+                    result.fail(batch.get(i).number(), "Фильм с id=" + filmIds[i] + " не найден");
+                } else {
+                    result.setSkipped(result.getSkipped() + 1);
+                }
+            }
+        });
+    }
+
+    public ImportResult importFriendships(InputStream body) {
+        return importLines("дружеских связей", body, line -> {
+            FriendshipImportDto friendship = objectMapper.readValue(line, FriendshipImportDto.class);
+            if (friendship.getUserId() == null || friendship.getFriendId() == null) {
+                throw new ValidationException("Нужны userId и friendId");
+            }
+            if (friendship.getUserId().equals(friendship.getFriendId())) {
+                throw new ValidationException("Пользователь не может добавить самого себя в друзья");
+            }
+            return friendship;
+        }, (batch, result) -> {
+            long[] userIds = new long[batch.size()];
+            long[] friendIds = new long[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                userIds[i] = batch.get(i).value().getUserId();
+                friendIds[i] = batch.get(i).value().getFriendId();
+            }
+            int[] added = userStorage.addFriends(userIds, friendIds);
+            for (int i = 0; i < added.length; i++) {
+                if (added[i] > 0) {
+                    result.setImported(result.getImported() + 1);
+                } else {
+                    long missing = userStorage.exists(userIds[i]) ? friendIds[i] : userIds[i];
+                    result.fail(batch.get(i).number(), "Пользователь с id=" + missing + " не найден");
+                }
+            }
+        });
+    }
+
+    private <T> ImportResult importLines(String what, InputStream body, LineParser<T> parser,
+                                         BiConsumer<List<Line<T>>, ImportResult> writer) {
+        ImportResult result = new ImportResult();
+        List<Line<T>> batch = new ArrayList<>(BATCH_SIZE);
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String text;
+            long number = 0;
+            while ((text = reader.readLine()) != null) {
+                number++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                result.setProcessed(result.getProcessed() + 1);
+                try {
+                    batch.add(new Line<>(number, parser.parse(text)));
+                } catch (JsonProcessingException e) {
+                    result.fail(number, "Некорректный JSON: " + e.getOriginalMessage());
+                } catch (ValidationException | NotFoundException e) {
+                    result.fail(number, e.getMessage());
+                } catch (RuntimeException e) {
+                    result.fail(number, "Некорректная запись: " + e.getMessage());
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, result, writer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать тело запроса", e);
+        }
+        flush(batch, result, writer);
+
+        log.info("Импорт {}: строк {}, загружено {}, пропущено {}, ошибок {} за {} мс", what,
+                result.getProcessed(), result.getImported(), result.getSkipped(), result.getFailed(),
+                (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    private static <T> void flush(List<Line<T>> batch, ImportResult result,
+                                  BiConsumer<List<Line<T>>, ImportResult> writer) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writer.accept(batch, result);
+        } catch (DataAccessException e) {
+            log.warn("Пачка импорта отклонена БД: {}", e.getMostSpecificCause().getMessage());
+            for (Line<T> line : batch) {
+                result.fail(line.number(), "Ошибка записи в БД: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+        batch.clear();
+    }
+
+    private static <T> List<T> values(List<Line<T>> batch) {
+        return batch.stream().map(Line::value).collect(Collectors.toList());
+    }
+
+    private record Line<T>(long number, T value) {
+    }
+
+    @FunctionalInterface
+    private interface LineParser<T> {
+        T parse(String line) throws JsonProcessingException;
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
@@ -18,6 +19,14 @@ public class UserService {
         return userStorage.findAll();
     }
 
+    public long version() {
+        return userStorage.version();
+    }
+
+    public List<User> findPage(Long afterId, int limit) {
+        return userStorage.findPage(afterId, limit);
+    }
+
     public User findById(Long id) {
         return userStorage.findById(id);
     }
@@ -36,29 +45,43 @@ public class UserService {
         if (userId.equals(friendId)) {
             throw new ValidationException("Пользователь не может добавить самого себя в друзья");
         }
-        userStorage.findById(userId);
-        userStorage.findById(friendId);
+        requireUsers(userId, friendId);
         userStorage.addFriend(userId, friendId);
     }
 
     public void removeFriend(Long userId, Long friendId) {
-        userStorage.findById(userId);
-        userStorage.findById(friendId);
+        requireUsers(userId, friendId);
         userStorage.removeFriend(userId, friendId);
     }
 
     public List<User> getFriends(Long userId) {
-        findById(userId);
+        requireUsers(userId);
         return userStorage.getFriends(userId);
     }
 
     public List<User> getCommonFriends(Long id, Long otherId) {
-        findById(id);
-        findById(otherId);
+        requireUsers(id, otherId);
         return userStorage.getCommonFriends(id, otherId);
     }
 
-    private void validateUser(User user) {
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        requireUsers(userId);
+        return userStorage.getFriendSuggestions(userId, count);
+    }
+
+    private void requireUsers(Long... ids) {
+        if (userStorage.existsAll(List.of(ids))) {
+            return;
+        }
+        // Редкий путь: выясняем, какого именно пользователя нет, в порядке аргументов
+        for (Long id : ids) {
+            if (!userStorage.exists(id)) {
+                throw new NotFoundException("Пользователь с id=" + id + " не найден");
+            }
+        }
+    }
+
+    void validateUser(User user) {
         if (user.getEmail() == null || user.getEmail().isBlank() || !user.getEmail().contains("@")) {
             throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
         }
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки связей «id — id» (лайк, дружба). Под блокировкой связи выполняются и запись в БД,
+ * и обновление её зеркала в памяти: тогда зеркало меняется в том же порядке, в каком фиксировались записи,
+ * и конкурирующие добавление и удаление одной связи не оставляют его расходящимся с БД.
+ * <p>
+ * Разные связи почти всегда попадают в разные полосы, поэтому лайки одного популярного фильма
+ * не выстраиваются в очередь. Несколько полос берутся строго по возрастанию номера — без взаимных блокировок.
+ */
+public final class EdgeLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public EdgeLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withEdge(long first, long second, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe(first, second)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Берёт полосы всех связей пачки; {@code first[i]} и {@code second[i]} — концы i-й связи.
+     */
+    public <T> T withEdges(long[] first, long[] second, Supplier<T> action) {
+        BitSet used = new BitSet(stripes.length);
+        for (int i = 0; i < first.length; i++) {
+            used.set(stripe(first[i], second[i]));
+        }
+        return locked(used, action);
+    }
+
+    /**
+     * Берёт все полосы: для изменений, затрагивающих неизвестное заранее множество связей, например удаления
+     * сущности вместе со всеми её связями.
+     */
+    public <T> T withAll(Supplier<T> action) {
+        BitSet all = new BitSet(stripes.length);
+        all.set(0, stripes.length);
+        return locked(all, action);
+    }
+
+    private <T> T locked(BitSet used, Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (int i = used.nextSetBit(0); i >= 0; i = used.nextSetBit(i + 1)) {
+                stripes[i].lock();
+                locked = i + 1;
+            }
+            return action.get();
+        } finally {
+            for (int i = used.previousSetBit(locked - 1); i >= 0; i = used.previousSetBit(i - 1)) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    private int stripe(long first, long second) {
+        long hash = (first * 0x9E3779B97F4A7C15L) ^ (second * 0xC2B2AE3D27D4EB4FL);
+        return (int) (hash >>> 40) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Режимы хранилищ в памяти; режимы независимы и включаются в любом сочетании:
+ * <pre>{@code
+ * InMemoryStorageOptions.defaults()
+ *         .durable(Path.of("./db/memory"), Duration.ofMinutes(1))
+ *         .readOptimized(Duration.ofMillis(100))
+ * }</pre>
+ *
+ * @param directory        каталог журнала изменений и снимков; {@code null} — хранилище не переживает перезапуск
+ * @param snapshotInterval как часто снимать снимок на диск, после которого журнал усекается
+ * @param publishInterval  как часто публиковать снимок для чтения списков; {@code null} — списки читаются
+ *                         из карты напрямую. Поддерживается только хранилищем фильмов
+ */
+public record InMemoryStorageOptions(Path directory, Duration snapshotInterval, Duration publishInterval) {
+
+    private static final InMemoryStorageOptions DEFAULTS = new InMemoryStorageOptions(null, null, null);
+
+    public static InMemoryStorageOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Каждое изменение сначала дописывается в журнал в {@code directory}, хранилище восстанавливается
+     * из него при следующем создании.
+     */
+    public InMemoryStorageOptions durable(Path directory, Duration snapshotInterval) {
+        return new InMemoryStorageOptions(directory, snapshotInterval, publishInterval);
+    }
+
+    /**
+     * Списки читаются из неизменяемого снимка, который публикуется раз в {@code publishInterval}.
+     */
+    public InMemoryStorageOptions readOptimized(Duration publishInterval) {
+        return new InMemoryStorageOptions(directory, snapshotInterval, publishInterval);
+    }
+
+    public boolean isDurable() {
+        return directory != null;
+    }
+
+    public boolean isReadOptimized() {
+        return publishInterval != null;
+    }
+}
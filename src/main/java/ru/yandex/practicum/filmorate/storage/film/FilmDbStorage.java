@@ -1,26 +1,70 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.EdgeLocks;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.WriteBehindJournal;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Component("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    private static final int LIKES_IN_LIST_LIMIT = 1000;
+
+    private static final String INSERT_LIKE_IF_ABSENT_SQL = """
+            INSERT INTO likes (film_id, user_id)
+            SELECT f.id, u.id FROM films f, users u
+            WHERE f.id = ? AND u.id = ?
+              AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.film_id = f.id AND l.user_id = u.id)
+            """;
+    private static final String DELETE_LIKE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String MARK_LIKE_COUNTS_SQL = "MERGE INTO like_count_state KEY(id) VALUES (1, ?)";
+    private static final String USER_AND_FILM_EXIST_SQL = """
+            SELECT EXISTS (SELECT 1 FROM users WHERE id = ?) AS user_exists,
+                   EXISTS (SELECT 1 FROM films WHERE id = ?) AS film_exists
+            """;
+
     private final JdbcTemplate jdbcTemplate;
+    private final WriteBehindJournal journal;
+    private final FilmLeaderboard leaderboard = new FilmLeaderboard();
+    private final LikeCountBuffer likeCountBuffer = new LikeCountBuffer();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
+    private final FilmRecommender recommender = new FilmRecommender(likeMatrix);
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final List<LongConsumer> likesListeners = new CopyOnWriteArrayList<>();
+    private final List<LongConsumer> deleteListeners = new CopyOnWriteArrayList<>();
+    private final EdgeLocks likeLocks = new EdgeLocks(256);
 
     private static final String FILM_SELECT_SQL =
             "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, " +
@@ -28,6 +72,81 @@ public class FilmDbStorage implements FilmStorage {
                     "FROM films f " +
                     "LEFT JOIN film_genres g ON f.id = g.film_id ";
 
+    private static final String FILM_PAGE_SQL =
+            "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, " +
+                    "g.genre_id " +
+                    "FROM (SELECT * FROM films WHERE id > ? ORDER BY id LIMIT ?) f " +
+                    "LEFT JOIN film_genres g ON f.id = g.film_id " +
+                    "ORDER BY f.id";
+
+    @PostConstruct
+    public void init() {
+        rebuildLeaderboard();
+        rebuildLikeMatrix();
+        rebuildSearchIndex();
+        journal.register(JournalRecord.Type.LIKE_ADDED, records -> applyLikes(INSERT_LIKE_IF_ABSENT_SQL, records, 1));
+        journal.register(JournalRecord.Type.LIKE_REMOVED, records -> applyLikes(DELETE_LIKE_SQL, records, -1));
+    }
+
+    /**
+     * Рейтинг строится из колонки like_count. После чистой остановки она сброшена полностью и берётся как есть;
+     * после аварийной несброшенные приращения потеряны, и колонка сначала пересчитывается по likes.
+     */
+    private void rebuildLeaderboard() {
+        List<Boolean> clean = jdbcTemplate.queryForList("SELECT clean FROM like_count_state WHERE id = 1",
+                Boolean.class);
+        if (clean.isEmpty() || !clean.get(0)) {
+            jdbcTemplate.update("UPDATE films f SET like_count = " +
+                    "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)");
+            log.info("Счётчики лайков пересчитаны по таблице likes: предыдущая остановка была не чистой");
+        }
+        // До следующей чистой остановки колонка может отставать от likes
+        jdbcTemplate.update(MARK_LIKE_COUNTS_SQL, false);
+
+        Map<Long, Long> likeCounts = new HashMap<>();
+        Map<Long, FilmLeaderboard.Facets> facets = new HashMap<>();
+        Map<Long, List<Integer>> genres = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+        });
+        jdbcTemplate.query("SELECT id, like_count, mpa_id, release_date FROM films", rs -> {
+            long id = rs.getLong("id");
+            likeCounts.put(id, rs.getLong("like_count"));
+            int mpaId = rs.getInt("mpa_id");
+            Integer mpa = rs.wasNull() ? null : mpaId;
+            Date releaseDate = rs.getDate("release_date");
+            int[] genreIds = genres.getOrDefault(id, List.of()).stream().mapToInt(Integer::intValue).toArray();
+            facets.put(id, new FilmLeaderboard.Facets(mpa,
+                    releaseDate == null ? null : releaseDate.toLocalDate().getYear(), genreIds));
+        });
+        leaderboard.rebuild(likeCounts, facets);
+        log.info("Рейтинг популярности построен: {} фильмов", likeCounts.size());
+    }
+
+    private void rebuildLikeMatrix() {
+        Map<Long, long[]> filmsByUser = loadGroups("SELECT user_id, film_id FROM likes ORDER BY user_id, film_id");
+        Map<Long, long[]> usersByFilm = loadGroups("SELECT film_id, user_id FROM likes ORDER BY film_id, user_id");
+        likeMatrix.rebuild(filmsByUser, usersByFilm);
+        log.info("Матрица лайков построена: {} пользователей, {} фильмов", filmsByUser.size(), usersByFilm.size());
+    }
+
+    private void rebuildSearchIndex() {
+        jdbcTemplate.query("SELECT id, name, description FROM films", rs -> {
+            searchIndex.index(rs.getLong("id"), rs.getString("name"), rs.getString("description"));
+        });
+        log.info("Поисковый индекс построен: {} фильмов", searchIndex.size());
+    }
+
+    private Map<Long, long[]> loadGroups(String sql) {
+        Map<Long, SortedLongSet> groups = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            groups.computeIfAbsent(rs.getLong(1), id -> new SortedLongSet()).add(rs.getLong(2));
+        });
+        Map<Long, long[]> result = new HashMap<>(groups.size() * 2);
+        groups.forEach((id, values) -> result.put(id, values.toLongArray()));
+        return result;
+    }
+
     @Override
     public List<Film> findAll() {
         Map<Long, Film> filmMap = jdbcTemplate.query(FILM_SELECT_SQL, new FilmResultSetExtractor());
@@ -35,6 +154,17 @@ public class FilmDbStorage implements FilmStorage {
         return new ArrayList<>(filmMap.values());
     }
 
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        Map<Long, Film> filmMap = jdbcTemplate.query(FILM_PAGE_SQL, ps -> {
+            ps.setLong(1, afterId == null ? 0 : afterId);
+            ps.setInt(2, limit);
+        }, new FilmResultSetExtractor());
+        List<Film> films = new ArrayList<>(filmMap.values());
+        loadAllLikes(films);
+        return films;
+    }
+
     @Override
     public Film findById(Long id) {
         String sql = FILM_SELECT_SQL + "WHERE f.id = ?";
@@ -49,6 +179,24 @@ public class FilmDbStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public boolean exists(Long id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)", Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        if (distinct.isEmpty()) {
+            return true;
+        }
+        String placeholders = String.join(",", Collections.nCopies(distinct.size(), "?"));
+        Integer found = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM films WHERE id IN (" + placeholders + ")", Integer.class, distinct.toArray());
+        return found != null && found == distinct.size();
+    }
+
     private static class FilmResultSetExtractor implements ResultSetExtractor<Map<Long, Film>> {
         @Override
         public Map<Long, Film> extractData(ResultSet rs) throws SQLException {
@@ -101,6 +249,9 @@ public class FilmDbStorage implements FilmStorage {
 
         film.setId(keyHolder.getKey().longValue());
         saveGenresBatch(film);
+        leaderboard.add(film.getId(), FilmLeaderboard.Facets.of(film));
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        version.incrementAndGet();
         return film;
     }
 
@@ -122,9 +273,63 @@ public class FilmDbStorage implements FilmStorage {
 
         jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", film.getId());
         saveGenresBatch(film);
+        leaderboard.updateFacets(film.getId(), FilmLeaderboard.Facets.of(film));
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        touch(film.getId());
         return film;
     }
 
+    @Override
+    public List<Film> saveAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        String sql = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        ps.setInt(4, film.getDuration());
+                        if (film.getMpaId() != null) {
+                            ps.setInt(5, film.getMpaId());
+                        } else {
+                            ps.setNull(5, java.sql.Types.INTEGER);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> genres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).get("ID")).longValue());
+            for (Integer genreId : film.getGenreIds()) {
+                genres.add(new Object[]{film.getId(), genreId});
+            }
+        }
+        if (!genres.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genres);
+        }
+        for (Film film : films) {
+            leaderboard.add(film.getId(), FilmLeaderboard.Facets.of(film));
+            searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        }
+        version.incrementAndGet();
+        log.info("Пакетно сохранено фильмов: {}", films.size());
+        return films;
+    }
+
     private void saveGenresBatch(Film film) {
         if (film.getGenreIds() != null && !film.getGenreIds().isEmpty()) {
             List<Object[]> batch = film.getGenreIds().stream()
@@ -139,58 +344,250 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public void addLike(Long filmId, Long userId) {
-        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        if (journal.isEnabled()) {
+            requireUserAndFilm(filmId, userId);
+            journal.append(JournalRecord.likeAdded(filmId, userId));
+            return;
+        }
+        // Проверка существования фильма и пользователя входит в сам INSERT; 0 строк — повторный лайк или нет сущности
+        int inserted = likeLocks.withEdge(filmId, userId, () -> {
+            int rows = jdbcTemplate.update(INSERT_LIKE_IF_ABSENT_SQL, filmId, userId);
+            if (rows > 0) {
+                onLikesChanged(filmId, userId, 1);
+            }
+            return rows;
+        });
+        if (inserted == 0) {
+            requireUserAndFilm(filmId, userId);
+        }
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
-        jdbcTemplate.update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId);
+        if (journal.isEnabled()) {
+            requireUserAndFilm(filmId, userId);
+            journal.append(JournalRecord.likeRemoved(filmId, userId));
+            return;
+        }
+        int deleted = likeLocks.withEdge(filmId, userId, () -> {
+            int rows = jdbcTemplate.update(DELETE_LIKE_SQL, filmId, userId);
+            if (rows > 0) {
+                onLikesChanged(filmId, userId, -1);
+            }
+            return rows;
+        });
+        if (deleted == 0) {
+            requireUserAndFilm(filmId, userId);
+        }
+    }
+
+    @Override
+    public int[] addLikes(long[] filmIds, long[] userIds) {
+        List<JournalRecord> records = new ArrayList<>(filmIds.length);
+        for (int i = 0; i < filmIds.length; i++) {
+            records.add(JournalRecord.likeAdded(filmIds[i], userIds[i]));
+        }
+        return applyLikes(INSERT_LIKE_IF_ABSENT_SQL, records, 1);
+    }
+
+    @Override
+    public long likeCount(Long filmId) {
+        return leaderboard.likes(filmId);
+    }
+
+    @Override
+    public void addLikesListener(LongConsumer listener) {
+        likesListeners.add(listener);
+    }
+
+    @Override
+    public void addDeleteListener(LongConsumer listener) {
+        deleteListeners.add(listener);
+    }
+
+    @Override
+    public void removeLikesOf(Long userId) {
+        likeLocks.withAll(() -> {
+            List<Long> filmIds = jdbcTemplate.queryForList(
+                    "SELECT film_id FROM likes WHERE user_id = ?", Long.class, userId);
+            jdbcTemplate.update("DELETE FROM likes WHERE user_id = ?", userId);
+            filmIds.forEach(filmId -> onLikesChanged(filmId, userId, -1));
+            return null;
+        });
+    }
+
+    private void requireUserAndFilm(Long filmId, Long userId) {
+        jdbcTemplate.query(USER_AND_FILM_EXIST_SQL, rs -> {
+            if (!rs.getBoolean("user_exists")) {
+                throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+            }
+            if (!rs.getBoolean("film_exists")) {
+                throw new NotFoundException("Фильм с id=" + filmId + " не найден");
+            }
+        }, userId, filmId);
+    }
+
+    private int[] applyLikes(String sql, List<JournalRecord> records, int delta) {
+        long[] filmIds = records.stream().mapToLong(JournalRecord::first).toArray();
+        long[] userIds = records.stream().mapToLong(JournalRecord::second).toArray();
+        List<Object[]> batch = records.stream()
+                .map(r -> new Object[]{r.first(), r.second()})
+                .collect(Collectors.toList());
+        return likeLocks.withEdges(filmIds, userIds, () -> {
+            int[] updated = jdbcTemplate.batchUpdate(sql, batch);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] > 0) {
+                    onLikesChanged(filmIds[i], userIds[i], delta);
+                }
+            }
+            return updated;
+        });
+    }
+
+    private void onLikesChanged(long filmId, long userId, int delta) {
+        if (delta > 0) {
+            likeMatrix.add(userId, filmId);
+        } else {
+            likeMatrix.remove(userId, filmId);
+        }
+        leaderboard.increment(filmId, delta);
+        likeCountBuffer.add(filmId, delta);
+        touch(filmId);
+        likesListeners.forEach(listener -> listener.accept(filmId));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.flush-interval-ms:1000}")
+    public void flushLikeCounts() {
+        flush();
+    }
+
+    /**
+     * Последний сброс при остановке. Если он удался, like_count совпадает с likes, и следующий запуск
+     * строит рейтинг из колонки без пересчёта.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (flush()) {
+            jdbcTemplate.update(MARK_LIKE_COUNTS_SQL, true);
+        }
+    }
+
+    private boolean flush() {
+        Map<Long, Long> deltas = likeCountBuffer.drain();
+        if (deltas.isEmpty()) {
+            return true;
+        }
+
+        List<Object[]> batch = deltas.entrySet().stream()
+                .map(e -> new Object[]{e.getValue(), e.getKey()})
+                .collect(Collectors.toList());
+        try {
+            jdbcTemplate.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE id = ?", batch);
+            return true;
+        } catch (DataAccessException e) {
+            deltas.forEach(likeCountBuffer::add);
+            log.warn("Не удалось сбросить счётчики лайков, повтор при следующем сбросе: {}", e.getMessage());
+            return false;
+        }
     }
 
     private void loadAllLikes(List<Film> films) {
         if (films.isEmpty()) return;
-        String ids = films.stream().map(f -> f.getId().toString()).collect(Collectors.joining(","));
-        String sql = "SELECT film_id, user_id FROM likes WHERE film_id IN (" + ids + ")";
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+        // Строки идут по первичному ключу: id каждого фильма приходят по возрастанию и дописываются в конец набора
+        Map<Long, SortedLongSet> likesMap = new HashMap<>();
+        RowCallbackHandler collector = rs -> likesMap
+                .computeIfAbsent(rs.getLong("film_id"), k -> new SortedLongSet())
+                .add(rs.getLong("user_id"));
 
-        Map<Long, Set<Long>> likesMap = new HashMap<>();
-        for (Map<String, Object> row : results) {
-            Long filmId = ((Number) row.get("film_id")).longValue();
-            Long userId = ((Number) row.get("user_id")).longValue();
-            likesMap.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
+        if (films.size() > LIKES_IN_LIST_LIMIT) {
+            jdbcTemplate.query("SELECT film_id, user_id FROM likes ORDER BY film_id, user_id", collector);
+        } else {
+            List<Long> ids = films.stream().map(Film::getId).collect(Collectors.toList());
+            String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+            String sql = "SELECT film_id, user_id FROM likes WHERE film_id IN (" + placeholders + ") ORDER BY film_id, user_id";
+            jdbcTemplate.query(sql, collector, ids.toArray());
         }
 
         for (Film film : films) {
-            film.setLikes(likesMap.getOrDefault(film.getId(), new HashSet<>()));
+            film.setLikes(likesMap.getOrDefault(film.getId(), new SortedLongSet()));
         }
     }
 
     private void loadLikes(Film film) {
         String sql = "SELECT user_id FROM likes WHERE film_id = ?";
         List<Long> likes = jdbcTemplate.queryForList(sql, Long.class, film.getId());
-        film.setLikes(new HashSet<>(likes));
+        film.setLikes(new SortedLongSet(likes));
     }
 
     @Override
     public void deleteById(Long id) {
-        jdbcTemplate.update("DELETE FROM films WHERE id = ?", id);
+        // Лайки фильма удаляются каскадом, поэтому ни один лайк не должен попасть в матрицу между DELETE и removeFilm
+        likeLocks.withAll(() -> {
+            jdbcTemplate.update("DELETE FROM films WHERE id = ?", id);
+            likeMatrix.removeFilm(id);
+            return null;
+        });
+        leaderboard.remove(id);
+        searchIndex.remove(id);
+        likeCountBuffer.forget(id);
+        touch(id);
+        deleteListeners.forEach(listener -> listener.accept(id));
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public long version(Long filmId) {
+        return filmVersions.getOrDefault(filmId, 0L);
+    }
+
+    private void touch(long filmId) {
+        filmVersions.put(filmId, version.incrementAndGet());
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId, int count) {
+        return findAllByIds(recommender.recommend(userId, count));
+    }
+
+    @Override
+    public List<Film> search(String query, int limit) {
+        return findAllByIds(searchIndex.search(query, limit));
     }
 
     @Override
     public List<Film> getPopular(int count) {
-        String sql = """
-                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id,
-                       g.genre_id
-                FROM films f
-                LEFT JOIN film_genres g ON f.id = g.film_id
-                LEFT JOIN likes l ON f.id = l.film_id
-                GROUP BY f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, g.genre_id
-                ORDER BY COUNT(l.user_id) DESC, f.id
-                LIMIT ?
-                """;
-
-        Map<Long, Film> filmMap = jdbcTemplate.query(sql, ps -> ps.setInt(1, count), new FilmResultSetExtractor());
+        return findAllByIds(leaderboard.top(count));
+    }
+
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        return findAllByIds(leaderboard.top(count, genreId, mpaId, year));
+    }
+
+    private List<Film> findAllByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        String sql = FILM_SELECT_SQL + "WHERE f.id IN (" + placeholders + ")";
+        Map<Long, Film> filmMap = jdbcTemplate.query(sql, ps -> {
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setLong(i + 1, ids.get(i));
+            }
+        }, new FilmResultSetExtractor());
         loadAllLikes(new ArrayList<>(filmMap.values()));
-        return new ArrayList<>(filmMap.values());
+
+        List<Film> films = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = filmMap.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
     }
 }
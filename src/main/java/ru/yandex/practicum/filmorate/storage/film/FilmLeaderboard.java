@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который поддерживается в памяти инкрементально.
+ * Порядок: больше лайков — выше, при равенстве — меньший id.
+ * <p>
+ * Кроме общего рейтинга ведутся такие же рейтинги по каждому жанру, MPA и году выпуска,
+ * поэтому топ с фильтром стоит столько же, сколько общий. При нескольких фильтрах обходится рейтинг
+ * самого узкого из них (год, затем жанр, затем MPA), остальные фильтры проверяются по записи.
+ */
+class FilmLeaderboard {
+
+    private static final Comparator<Entry> RANK_ORDER = Comparator
+            .comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private static final NavigableSet<Entry> EMPTY = new ConcurrentSkipListSet<>(RANK_ORDER);
+
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(RANK_ORDER);
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byMpa = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new ConcurrentHashMap<>();
+
+    synchronized void rebuild(Map<Long, Long> likeCounts, Map<Long, Facets> facets) {
+        ranking.clear();
+        entries.clear();
+        byGenre.clear();
+        byMpa.clear();
+        byYear.clear();
+        likeCounts.forEach((filmId, likes) -> {
+            Entry entry = new Entry(filmId, likes, facets.getOrDefault(filmId, Facets.NONE));
+            entries.put(filmId, entry);
+            index(entry);
+        });
+    }
+
+    void add(long filmId, Facets facets) {
+        entries.computeIfAbsent(filmId, id -> {
+            Entry entry = new Entry(id, 0, facets);
+            index(entry);
+            return entry;
+        });
+    }
+
+    void updateFacets(long filmId, Facets facets) {
+        entries.computeIfPresent(filmId, (id, entry) -> {
+            unindex(entry);
+            Entry next = new Entry(id, entry.likes(), facets);
+            index(next);
+            return next;
+        });
+    }
+
+    void remove(long filmId) {
+        entries.computeIfPresent(filmId, (id, entry) -> {
+            unindex(entry);
+            return null;
+        });
+    }
+
+    long increment(long filmId, long delta) {
+        Entry updated = entries.compute(filmId, (id, entry) -> {
+            long likes = entry == null ? 0 : entry.likes();
+            Facets facets = entry == null ? Facets.NONE : entry.facets();
+            if (entry != null) {
+                unindex(entry);
+            }
+            Entry next = new Entry(id, Math.max(0, likes + delta), facets);
+            index(next);
+            return next;
+        });
+        return updated.likes();
+    }
+
+    long likes(long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.likes();
+    }
+
+    List<Long> top(int count) {
+        return top(count, null, null, null);
+    }
+
+    List<Long> top(int count, Integer genreId, Integer mpaId, Integer year) {
+        List<Long> result = new ArrayList<>(Math.min(count, entries.size()));
+        NavigableSet<Entry> source = ranking;
+        for (NavigableSet<Entry> facet : List.of(
+                mpaId == null ? ranking : byMpa.getOrDefault(mpaId, EMPTY),
+                genreId == null ? ranking : byGenre.getOrDefault(genreId, EMPTY),
+                year == null ? ranking : byYear.getOrDefault(year, EMPTY))) {
+            if (facet.isEmpty()) {
+                return result;
+            }
+            if (facet != ranking) {
+                source = facet;
+            }
+        }
+        for (Entry entry : source) {
+            if (result.size() >= count) {
+                break;
+            }
+            if (entry.facets().matches(genreId, mpaId, year)) {
+                result.add(entry.filmId());
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void index(Entry entry) {
+        ranking.add(entry);
+        Facets facets = entry.facets();
+        for (int genreId : facets.genreIds()) {
+            facetSet(byGenre, genreId).add(entry);
+        }
+        if (facets.mpaId() != null) {
+            facetSet(byMpa, facets.mpaId()).add(entry);
+        }
+        if (facets.year() != null) {
+            facetSet(byYear, facets.year()).add(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        ranking.remove(entry);
+        Facets facets = entry.facets();
+        for (int genreId : facets.genreIds()) {
+            facetSet(byGenre, genreId).remove(entry);
+        }
+        if (facets.mpaId() != null) {
+            facetSet(byMpa, facets.mpaId()).remove(entry);
+        }
+        if (facets.year() != null) {
+            facetSet(byYear, facets.year()).remove(entry);
+        }
+    }
+
+    private static NavigableSet<Entry> facetSet(Map<Integer, NavigableSet<Entry>> facet, int key) {
+        return facet.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(RANK_ORDER));
+    }
+
+    /**
+     * Признаки фильма, по которым ведутся отдельные рейтинги.
+     */
+    record Facets(Integer mpaId, Integer year, int[] genreIds) {
+        static final Facets NONE = new Facets(null, null, new int[0]);
+
+        static Facets of(Film film) {
+            int[] genreIds = film.getGenreIds() == null ? new int[0]
+                    : film.getGenreIds().stream().mapToInt(Integer::intValue).toArray();
+            Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+            return new Facets(film.getMpaId(), year, genreIds);
+        }
+
+        boolean matches(Integer genreId, Integer mpaId, Integer year) {
+            if (mpaId != null && !mpaId.equals(this.mpaId)) {
+                return false;
+            }
+            if (year != null && !year.equals(this.year)) {
+                return false;
+            }
+            if (genreId != null) {
+                for (int id : genreIds) {
+                    if (id == genreId) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private record Entry(long filmId, long likes, Facets facets) {
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Рекомендации фильмов по схожести вкусов (user-based collaborative filtering).
+ * <p>
+ * Соседи пользователя — те, у кого больше всего общих с ним лайков; их пересечения считаются параллельно
+ * в {@link ForkJoinPool} по фильмам пользователя. Кандидаты — фильмы соседей, которые пользователь ещё
+ * не лайкал, с весом, равным сумме пересечений лайкнувших их соседей.
+ * <p>
+ * Результат кэшируется вместе со строками матрицы, от которых он зависит: строкой пользователя, строками
+ * его фильмов (через них находятся соседи) и строками выбранных соседей (из них берутся кандидаты).
+ * Запись действительна, пока ни одна из этих строк не изменилась, поэтому лайки посторонних пользователей
+ * кэш не сбрасывают.
+ */
+class FilmRecommender {
+
+    static final int MAX_RESULTS = 100;
+    private static final int NEIGHBOURS = 50;
+    private static final int CACHE_SIZE = 10_000;
+    private static final int FILMS_PER_TASK = 8;
+    private static final long[] EMPTY = new long[0];
+
+    private final LikeMatrix matrix;
+    private final Map<Long, CachedRecommendation> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedRecommendation> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    FilmRecommender(LikeMatrix matrix) {
+        this.matrix = matrix;
+    }
+
+    List<Long> recommend(long userId, int count) {
+        CachedRecommendation cached;
+        synchronized (cache) {
+            cached = cache.get(userId);
+        }
+        if (cached == null || !isFresh(userId, cached)) {
+            cached = score(userId);
+            synchronized (cache) {
+                cache.put(userId, cached);
+            }
+        }
+        long[] films = cached.films();
+        List<Long> result = new ArrayList<>(Math.min(count, films.length));
+        for (int i = 0; i < films.length && i < count; i++) {
+            result.add(films[i]);
+        }
+        return result;
+    }
+
+    private boolean isFresh(long userId, CachedRecommendation cached) {
+        long computedAt = cached.computedAt();
+        if (matrix.userVersion(userId) > computedAt) {
+            return false;
+        }
+        for (long filmId : cached.own()) {
+            if (matrix.filmVersion(filmId) > computedAt) {
+                return false;
+            }
+        }
+        for (long neighbourId : cached.neighbours()) {
+            if (matrix.userVersion(neighbourId) > computedAt) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CachedRecommendation score(long userId) {
+        // Часы читаются до строк: изменение, которое расчёт мог не увидеть, получит версию больше этой
+        long computedAt = matrix.clock();
+        long[] own = matrix.filmsOf(userId);
+        if (own.length == 0) {
+            return new CachedRecommendation(computedAt, own, EMPTY, EMPTY);
+        }
+
+        Map<Long, int[]> overlaps = ForkJoinPool.commonPool().invoke(new OverlapTask(userId, own, 0, own.length));
+        List<Map.Entry<Long, int[]>> neighbours = new ArrayList<>(overlaps.entrySet());
+        neighbours.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Integer.compare(b.getValue()[0], a.getValue()[0])
+                : Long.compare(a.getKey(), b.getKey()));
+
+        List<Map.Entry<Long, int[]>> nearest = neighbours.subList(0, Math.min(NEIGHBOURS, neighbours.size()));
+        Map<Long, long[]> candidates = new HashMap<>();
+        for (Map.Entry<Long, int[]> neighbour : nearest) {
+            int weight = neighbour.getValue()[0];
+            for (long filmId : matrix.filmsOf(neighbour.getKey())) {
+                if (!LikeMatrix.contains(own, filmId)) {
+                    candidates.computeIfAbsent(filmId, id -> new long[1])[0] += weight;
+                }
+            }
+        }
+
+        long[] films = candidates.entrySet().stream()
+                .sorted((a, b) -> a.getValue()[0] != b.getValue()[0]
+                        ? Long.compare(b.getValue()[0], a.getValue()[0])
+                        : Long.compare(a.getKey(), b.getKey()))
+                .limit(MAX_RESULTS)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+        return new CachedRecommendation(computedAt, own,
+                nearest.stream().mapToLong(Map.Entry::getKey).toArray(), films);
+    }
+
+    /**
+     * Считает для каждого другого пользователя число общих лайков на отрезке фильмов целевого пользователя.
+     */
+    private final class OverlapTask extends RecursiveTask<Map<Long, int[]>> {
+        private final long userId;
+        private final long[] films;
+        private final int from;
+        private final int to;
+
+        OverlapTask(long userId, long[] films, int from, int to) {
+            this.userId = userId;
+            this.films = films;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, int[]> compute() {
+            if (to - from <= FILMS_PER_TASK) {
+                Map<Long, int[]> overlaps = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    for (long otherId : matrix.usersOf(films[i])) {
+                        if (otherId != userId) {
+                            overlaps.computeIfAbsent(otherId, id -> new int[1])[0]++;
+                        }
+                    }
+                }
+                return overlaps;
+            }
+            int middle = (from + to) >>> 1;
+            OverlapTask left = new OverlapTask(userId, films, from, middle);
+            left.fork();
+            Map<Long, int[]> right = new OverlapTask(userId, films, middle, to).compute();
+            return merge(left.join(), right);
+        }
+
+        private Map<Long, int[]> merge(Map<Long, int[]> first, Map<Long, int[]> second) {
+            Map<Long, int[]> target = first.size() >= second.size() ? first : second;
+            Map<Long, int[]> source = target == first ? second : first;
+            source.forEach((otherId, count) -> target.merge(otherId, count, (a, b) -> {
+                a[0] += b[0];
+                return a;
+            }));
+            return target;
+        }
+    }
+
+    private record CachedRecommendation(long computedAt, long[] own, long[] neighbours, long[] films) {
+    }
+}
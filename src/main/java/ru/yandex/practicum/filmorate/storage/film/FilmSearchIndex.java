@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Полнотекстовый поиск фильмов по названию и описанию в памяти.
+ * <p>
+ * Текст приводится к нижнему регистру, «ё» заменяется на «е», слова выделяются по буквам и цифрам любого
+ * алфавита. Обратный индекс хранит для каждого слова фильмы и вес (слово в названии весит больше, чем
+ * в описании). Для неточного поиска словарь дополнительно проиндексирован по триграммам: слово запроса
+ * находит слова индекса, которые начинаются с него или совпадают с ним по большей части триграмм.
+ * Фильмы ранжируются по сумме весов найденных слов, умноженных на степень совпадения.
+ */
+class FilmSearchIndex {
+
+    static final int MAX_QUERY_TOKENS = 10;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final double PREFIX_MATCH = 0.8;
+    private static final double FUZZY_MATCH = 0.6;
+    private static final double MIN_TRIGRAM_SIMILARITY = 0.5;
+
+    private final Map<String, Map<Long, Integer>> postings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> vocabularyByTrigram = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new ConcurrentHashMap<>();
+
+    synchronized void index(long filmId, String name, String description) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String token : tokenize(name)) {
+            weights.merge(token, NAME_WEIGHT, Math::max);
+        }
+        for (String token : tokenize(description)) {
+            weights.merge(token, DESCRIPTION_WEIGHT, (current, added) -> current == NAME_WEIGHT
+                    ? NAME_WEIGHT + DESCRIPTION_WEIGHT : current);
+        }
+        remove(filmId);
+        weights.forEach((token, weight) -> postings.computeIfAbsent(token, t -> {
+            for (String trigram : trigrams(t)) {
+                vocabularyByTrigram.computeIfAbsent(trigram, g -> ConcurrentHashMap.newKeySet()).add(t);
+            }
+            return new ConcurrentHashMap<>();
+        }).put(filmId, weight));
+        documents.put(filmId, weights);
+    }
+
+    synchronized void remove(long filmId) {
+        Map<String, Integer> previous = documents.remove(filmId);
+        if (previous == null) {
+            return;
+        }
+        for (String token : previous.keySet()) {
+            Map<Long, Integer> films = postings.get(token);
+            if (films == null) {
+                continue;
+            }
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                postings.remove(token);
+                for (String trigram : trigrams(token)) {
+                    Set<String> tokens = vocabularyByTrigram.get(trigram);
+                    if (tokens != null) {
+                        tokens.remove(token);
+                        if (tokens.isEmpty()) {
+                            vocabularyByTrigram.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    /**
+     * До {@code limit} id фильмов по убыванию релевантности, при равенстве — по возрастанию id.
+     */
+    List<Long> search(String query, int limit) {
+        Map<Long, double[]> scores = new HashMap<>();
+        for (String queryToken : queryTokens(query)) {
+            Map<Long, Double> best = new HashMap<>();
+            matches(queryToken).forEach((token, similarity) -> {
+                Map<Long, Integer> films = postings.get(token);
+                if (films != null) {
+                    films.forEach((filmId, weight) -> best.merge(filmId, weight * similarity, Math::max));
+                }
+            });
+            best.forEach((filmId, score) -> scores.computeIfAbsent(filmId, id -> new double[1])[0] += score);
+        }
+
+        PriorityQueue<Map.Entry<Long, double[]>> top = new PriorityQueue<>(limit + 1, (a, b) ->
+                a.getValue()[0] != b.getValue()[0]
+                        ? Double.compare(a.getValue()[0], b.getValue()[0])
+                        : Long.compare(b.getKey(), a.getKey()));
+        for (Map.Entry<Long, double[]> entry : scores.entrySet()) {
+            top.add(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Long, double[]>> ranked = new ArrayList<>(top);
+        ranked.sort(top.comparator().reversed());
+        List<Long> result = new ArrayList<>(ranked.size());
+        ranked.forEach(entry -> result.add(entry.getKey()));
+        return result;
+    }
+
+    /**
+     * Слова индекса, подходящие под слово запроса, со степенью совпадения от 0 до 1.
+     */
+    private Map<String, Double> matches(String queryToken) {
+        Map<String, Double> matches = new HashMap<>();
+        if (postings.containsKey(queryToken)) {
+            matches.put(queryToken, 1.0);
+        }
+        if (queryToken.length() < 3) {
+            return matches;
+        }
+        Set<String> queryTrigrams = trigrams(queryToken);
+        Map<String, int[]> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (String token : vocabularyByTrigram.getOrDefault(trigram, Set.of())) {
+                shared.computeIfAbsent(token, t -> new int[1])[0]++;
+            }
+        }
+        shared.forEach((token, count) -> {
+            if (token.equals(queryToken)) {
+                return;
+            }
+            if (token.startsWith(queryToken)) {
+                matches.put(token, PREFIX_MATCH);
+                return;
+            }
+            double similarity = count[0] / (double) Math.max(queryTrigrams.size(), trigrams(token).size());
+            if (similarity >= MIN_TRIGRAM_SIMILARITY) {
+                matches.put(token, FUZZY_MATCH * similarity);
+            }
+        });
+        return matches;
+    }
+
+    static Set<String> queryTokens(String query) {
+        Set<String> tokens = new LinkedHashSet<>(tokenize(query));
+        if (tokens.size() > MAX_QUERY_TOKENS) {
+            return new LinkedHashSet<>(new ArrayList<>(tokens).subList(0, MAX_QUERY_TOKENS));
+        }
+        return tokens;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Триграммы слова с границами: «кот» → «_ко», «кот», «от_». Граница в начале поднимает совпадения
+     * по префиксу, в конце — по окончанию слова.
+     */
+    private static Set<String> trigrams(String token) {
+        String padded = "_" + token + "_";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
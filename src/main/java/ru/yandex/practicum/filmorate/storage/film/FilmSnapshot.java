@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Неизменяемый снимок фильмов для чтения списков: фильмы по возрастанию id и по убыванию числа лайков
+ * (при равенстве — по id). Сортируется один раз при публикации, читатели получают представления
+ * массивов без копирования.
+ */
+final class FilmSnapshot {
+
+    private static final Comparator<Film> BY_ID = Comparator.comparingLong(Film::getId);
+    private static final Comparator<Film> BY_LIKES = Comparator.<Film>comparingInt(film -> film.getLikes().size())
+            .reversed()
+            .thenComparing(BY_ID);
+
+    private final long version;
+    private final long[] ids;
+    private final List<Film> byId;
+    private final List<Film> byLikes;
+
+    private FilmSnapshot(long version, Film[] byId, Film[] byLikes) {
+        this.version = version;
+        this.ids = Arrays.stream(byId).mapToLong(Film::getId).toArray();
+        this.byId = Collections.unmodifiableList(Arrays.asList(byId));
+        this.byLikes = Collections.unmodifiableList(Arrays.asList(byLikes));
+    }
+
+    /**
+     * Версию хранилища нужно прочитать до обхода фильмов: тогда снимок не старше своей версии.
+     */
+    static FilmSnapshot of(Collection<Film> films, long version) {
+        Film[] byId = films.toArray(Film[]::new);
+        Arrays.sort(byId, BY_ID);
+        Film[] byLikes = byId.clone();
+        Arrays.sort(byLikes, BY_LIKES);
+        return new FilmSnapshot(version, byId, byLikes);
+    }
+
+    long version() {
+        return version;
+    }
+
+    List<Film> all() {
+        return byId;
+    }
+
+    List<Film> page(long afterId, int limit) {
+        int position = Arrays.binarySearch(ids, afterId);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        return byId.subList(from, from + Math.min(limit, byId.size() - from));
+    }
+
+    List<Film> popular(int count) {
+        return byLikes.subList(0, Math.min(count, byLikes.size()));
+    }
+
+    List<Film> popular(int count, Predicate<Film> filter) {
+        List<Film> result = new ArrayList<>(Math.min(count, byLikes.size()));
+        for (Film film : byLikes) {
+            if (result.size() == count) {
+                break;
+            }
+            if (filter.test(film)) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+}
@@ -2,15 +2,28 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 public interface FilmStorage {
     List<Film> findAll();
 
+    List<Film> findPage(Long afterId, int limit);
+
     Film findById(Long id);
 
+    boolean exists(Long id);
+
+    boolean existsAll(Collection<Long> ids);
+
     Film save(Film film);
 
+    /**
+     * Сохраняет фильмы одной пачкой и проставляет им id. Валидация — на стороне вызывающего.
+     */
+    List<Film> saveAll(List<Film> films);
+
     Film update(Film film);
 
     void deleteById(Long id);
@@ -19,5 +32,61 @@ public interface FilmStorage {
 
     void removeLike(Long filmId, Long userId);
 
+    /**
+     * Пакетно ставит лайки: {@code filmIds[i]} от {@code userIds[i]}.
+     * Возвращает для каждой пары 1, если лайк добавлен, и 0, если он уже был или фильма/пользователя нет.
+     */
+    int[] addLikes(long[] filmIds, long[] userIds);
+
+    /**
+     * Текущее число лайков фильма без загрузки самого фильма; 0 — фильма нет.
+     */
+    long likeCount(Long filmId);
+
+    /**
+     * Подписывает на изменения лайков: слушатель получает id фильма, когда хранилище уже применило
+     * добавление или удаление лайка, в том числе пакетное и отложенное.
+     */
+    void addLikesListener(LongConsumer listener);
+
+    /**
+     * Подписывает на удаление фильмов: слушатель получает id фильма, когда тот уже удалён.
+     */
+    void addDeleteListener(LongConsumer listener);
+
+    /**
+     * Снимает все лайки пользователя перед его удалением. Иначе их удалила бы каскадом БД, и ни рейтинг,
+     * ни рекомендации, ни подписчики на лайки об этом бы не узнали.
+     */
+    void removeLikesOf(Long userId);
+
     List<Film> getPopular(int count);
+
+    /**
+     * Топ фильмов по лайкам среди фильмов с указанным жанром, MPA и годом выпуска; {@code null} — без фильтра.
+     */
+    List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year);
+
+    /**
+     * Фильмы, которые понравились пользователям с похожими лайками и которые сам пользователь ещё не лайкал,
+     * от самых рекомендуемых.
+     */
+    List<Film> getRecommendations(Long userId, int count);
+
+    /**
+     * До {@code limit} фильмов, в названии или описании которых встречаются слова запроса (в том числе
+     * по началу слова или с опечаткой), от самых релевантных.
+     */
+    List<Film> search(String query, int limit);
+
+    /**
+     * Номер версии данных хранилища: монотонно растёт после каждого изменения, которое видно при чтении.
+     */
+    long version();
+
+    /**
+     * Значение {@link #version()} на момент последнего изменения фильма или его лайков; 0 — фильм не менялся
+     * с запуска. Позволяет проверять, что закэшированное представление фильма ещё актуально.
+     */
+    long version(Long filmId);
 }
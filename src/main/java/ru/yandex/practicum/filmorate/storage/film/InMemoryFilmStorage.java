@@ -3,24 +3,152 @@ package ru.yandex.practicum.filmorate.storage.film;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.InMemoryStorageOptions;
+import ru.yandex.practicum.filmorate.storage.journal.WriteAheadLog;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Хранилище фильмов в памяти. Сохранённые фильмы не изменяются на месте: лайк или обновление
+ * атомарно подменяют запись в карте новой копией, поэтому читатели работают без блокировок
+ * и никогда не видят множество лайков в середине изменения.
+ * <p>
+ * В режиме снимков списки ({@code findAll}, страницы, популярные) читаются из неизменяемого
+ * {@link FilmSnapshot}, опубликованного через одну volatile-ссылку: чтение не копирует и не сортирует.
+ * Записи копятся в эпоху, и фоновый поток раз в эпоху публикует новый снимок, если что-то изменилось.
+ * Списки отстают от записей не больше чем на эпоху; фильм по id всегда читается из карты.
+ * <p>
+ * В надёжном режиме каждое изменение сначала дописывается в {@link WriteAheadLog}, и хранилище
+ * восстанавливается из его снимка и журнала при следующем создании с тем же каталогом.
+ */
 @Slf4j
-public class InMemoryFilmStorage implements FilmStorage {
+public class InMemoryFilmStorage implements FilmStorage, AutoCloseable {
+
+    private static final byte SAVED = 1;
+    private static final byte UPDATED = 2;
+    private static final byte DELETED = 3;
+    private static final byte LIKE_ADDED = 4;
+    private static final byte LIKE_REMOVED = 5;
 
     private final Map<Long, Film> films = new ConcurrentHashMap<>();
-    private long nextId = 1;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final List<LongConsumer> likesListeners = new CopyOnWriteArrayList<>();
+    private final List<LongConsumer> deleteListeners = new CopyOnWriteArrayList<>();
+    private final LongPredicate userExists;
+    private final Thread publisher;
+    private final WriteAheadLog writeAheadLog;
+    private volatile FilmSnapshot snapshot;
+    private volatile boolean running;
+
+    public InMemoryFilmStorage() {
+        this(InMemoryStorageOptions.defaults());
+    }
+
+    /**
+     * Режимы включаются независимо: надёжное хранилище сначала восстанавливается из журнала,
+     * и первый снимок для чтения публикуется уже из восстановленных фильмов.
+     */
+    public InMemoryFilmStorage(InMemoryStorageOptions options) {
+        this(options, userId -> true);
+    }
+
+    /**
+     * Хранилище, которое, как и {@link FilmDbStorage}, принимает лайки только от существующих пользователей:
+     * {@code userExists} проверяет пользователя по id.
+     */
+    public InMemoryFilmStorage(InMemoryStorageOptions options, LongPredicate userExists) {
+        this.userExists = userExists;
+        if (options.isDurable()) {
+            writeAheadLog = new WriteAheadLog(options.directory(), "films", false);
+            writeAheadLog.open(new Recovery(), options.snapshotInterval());
+        } else {
+            writeAheadLog = null;
+        }
+        if (options.isReadOptimized()) {
+            snapshot = FilmSnapshot.of(films.values(), version.get());
+            running = true;
+            long epochNanos = options.publishInterval().toNanos();
+            publisher = Thread.ofPlatform().daemon().name("film-snapshot-publisher").start(() -> {
+                while (running) {
+                    LockSupport.parkNanos(epochNanos);
+                    if (snapshot.version() != version.get()) {
+                        publishSnapshot();
+                    }
+                }
+            });
+        } else {
+            publisher = null;
+        }
+    }
+
+    /**
+     * Публикует снимок немедленно, не дожидаясь конца эпохи. В обычном режиме ничего не делает.
+     */
+    public synchronized void publishSnapshot() {
+        if (publisher != null) {
+            long current = version.get();
+            snapshot = FilmSnapshot.of(films.values(), current);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (publisher != null) {
+            LockSupport.unpark(publisher);
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
 
     @Override
     public List<Film> findAll() {
+        FilmSnapshot published = snapshot;
+        if (published != null) {
+            return published.all();
+        }
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        long after = afterId == null ? 0 : afterId;
+        FilmSnapshot published = snapshot;
+        if (published != null) {
+            return published.page(after, limit);
+        }
+        return films.values().stream()
+                .filter(film -> film.getId() > after)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film findById(Long id) {
         Film film = films.get(id);
@@ -30,47 +158,376 @@ public class InMemoryFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public boolean exists(Long id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return films.keySet().containsAll(ids);
+    }
+
     @Override
     public Film save(Film film) {
-        film.setId(nextId++);
+        return durably(() -> {
+            film.setId(nextId.getAndIncrement());
+            appendToLog(SAVED, out -> writeFilm(out, film));
+            applySave(film);
+            log.info("Сохранён фильм: {}", film.getName());
+            return film;
+        });
+    }
+
+    private void applySave(Film film) {
         films.put(film.getId(), film);
-        log.info("Сохранён фильм: {}", film.getName());
-        return film;
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        version.incrementAndGet();
+    }
+
+    @Override
+    public List<Film> saveAll(List<Film> films) {
+        films.forEach(this::save);
+        return films;
     }
 
     @Override
     public Film update(Film film) {
-        if (!films.containsKey(film.getId())) {
+        return durably(() -> {
+            requireFilm(film.getId());
+            appendToLog(UPDATED, out -> writeFilm(out, film));
+            applyUpdate(film);
+            log.info("Обновлён фильм: {}", film.getName());
+            return film;
+        });
+    }
+
+    private void applyUpdate(Film film) {
+        Film updated = films.computeIfPresent(film.getId(), (id, current) -> {
+            film.setLikes(current.getLikes());
+            return film;
+        });
+        if (updated == null) {
             throw new NotFoundException("Фильм с id=" + film.getId() + " не найден");
         }
-        films.put(film.getId(), film);
-        log.info("Обновлён фильм: {}", film.getName());
-        return film;
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
+        touch(film.getId());
     }
 
     @Override
     public void deleteById(Long id) {
-        if (!films.containsKey(id)) {
+        durably(() -> {
+            requireFilm(id);
+            appendToLog(DELETED, out -> out.writeLong(id));
+            applyDelete(id);
+            return null;
+        });
+        deleteListeners.forEach(listener -> listener.accept(id));
+    }
+
+    private void applyDelete(long id) {
+        if (films.remove(id) == null) {
             throw new NotFoundException("Фильм с id=" + id + " не найден");
         }
-        films.remove(id);
+        searchIndex.remove(id);
+        touch(id);
+    }
+
+    /**
+     * В режиме снимков — версия опубликованного снимка, чтобы кэш ответов не связал новую версию
+     * со списками из старого снимка.
+     */
+    @Override
+    public long version() {
+        FilmSnapshot published = snapshot;
+        return published != null ? published.version() : version.get();
+    }
+
+    @Override
+    public long version(Long filmId) {
+        return filmVersions.getOrDefault(filmId, 0L);
+    }
+
+    private void touch(long filmId) {
+        filmVersions.put(filmId, version.incrementAndGet());
     }
 
     @Override
     public void addLike(Long filmId, Long userId) {
-        Film film = findById(filmId);
-        film.getLikes().add(userId);
+        changeLikes(LIKE_ADDED, filmId, userId);
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
-        Film film = findById(filmId);
-        film.getLikes().remove(userId);
+        changeLikes(LIKE_REMOVED, filmId, userId);
+    }
+
+    @Override
+    public int[] addLikes(long[] filmIds, long[] userIds) {
+        int[] added = new int[filmIds.length];
+        for (int i = 0; i < filmIds.length; i++) {
+            if (exists(filmIds[i]) && userExists.test(userIds[i]) && changeLikes(LIKE_ADDED, filmIds[i], userIds[i])) {
+                added[i] = 1;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public long likeCount(Long filmId) {
+        Film film = films.get(filmId);
+        return film == null ? 0 : film.getLikes().size();
+    }
+
+    @Override
+    public void addLikesListener(LongConsumer listener) {
+        likesListeners.add(listener);
+    }
+
+    @Override
+    public void addDeleteListener(LongConsumer listener) {
+        deleteListeners.add(listener);
+    }
+
+    @Override
+    public void removeLikesOf(Long userId) {
+        for (Film film : films.values()) {
+            if (film.getLikes().contains(userId.longValue()) && exists(film.getId())) {
+                changeLikes(LIKE_REMOVED, film.getId(), userId);
+            }
+        }
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId, int count) {
+        Map<Long, Long> overlaps = new HashMap<>();
+        for (Film film : films.values()) {
+            if (film.getLikes().contains(userId.longValue())) {
+                for (Long otherId : film.getLikes()) {
+                    if (!otherId.equals(userId)) {
+                        overlaps.merge(otherId, 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        Map<Long, Long> scores = new HashMap<>();
+        for (Film film : films.values()) {
+            if (!film.getLikes().contains(userId.longValue())) {
+                for (Long otherId : film.getLikes()) {
+                    Long overlap = overlaps.get(otherId);
+                    if (overlap != null) {
+                        scores.merge(film.getId(), overlap, Long::sum);
+                    }
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(entry -> films.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private boolean changeLikes(byte type, long filmId, long userId) {
+        return durably(() -> {
+            requireUser(userId);
+            requireFilm(filmId);
+            appendToLog(type, out -> {
+                out.writeLong(filmId);
+                out.writeLong(userId);
+            });
+            return applyLikes(type, filmId, userId);
+        });
+    }
+
+    private boolean applyLikes(byte type, long filmId, long userId) {
+        boolean[] changed = new boolean[1];
+        Film film = films.computeIfPresent(filmId, (id, current) -> {
+            SortedLongSet likes = new SortedLongSet(current.getLikes());
+            changed[0] = type == LIKE_ADDED ? likes.add(userId) : likes.remove(userId);
+            return changed[0] ? withLikes(current, likes) : current;
+        });
+        if (film == null) {
+            throw new NotFoundException("Фильм с id=" + filmId + " не найден");
+        }
+        if (changed[0]) {
+            touch(filmId);
+            likesListeners.forEach(listener -> listener.accept(filmId));
+        }
+        return changed[0];
+    }
+
+    private static Film withLikes(Film source, SortedLongSet likes) {
+        Film film = new Film();
+        film.setId(source.getId());
+        film.setName(source.getName());
+        film.setDescription(source.getDescription());
+        film.setReleaseDate(source.getReleaseDate());
+        film.setDuration(source.getDuration());
+        film.setMpaId(source.getMpaId());
+        film.setGenreIds(source.getGenreIds());
+        film.setLikes(likes);
+        return film;
+    }
+
+    private void requireUser(long id) {
+        if (!userExists.test(id)) {
+            throw new NotFoundException("Пользователь с id=" + id + " не найден");
+        }
+    }
+
+    private void requireFilm(long id) {
+        if (!films.containsKey(id)) {
+            throw new NotFoundException("Фильм с id=" + id + " не найден");
+        }
+    }
+
+    /**
+     * В надёжном режиме изменения выполняются по одному под замком журнала: проверка, запись в журнал
+     * и применение не перемежаются с другими изменениями.
+     */
+    private <T> T durably(Supplier<T> mutation) {
+        return writeAheadLog == null ? mutation.get() : writeAheadLog.write(mutation);
+    }
+
+    private void appendToLog(byte type, WriteAheadLog.RecordWriter payload) {
+        if (writeAheadLog != null) {
+            writeAheadLog.append(out -> {
+                out.writeByte(type);
+                payload.writeTo(out);
+            });
+        }
+    }
+
+    private static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        WriteAheadLog.writeString(out, film.getName());
+        WriteAheadLog.writeString(out, film.getDescription());
+        WriteAheadLog.writeDate(out, film.getReleaseDate());
+        out.writeInt(film.getDuration());
+        out.writeInt(film.getMpaId() == null ? 0 : film.getMpaId());
+        out.writeInt(film.getGenreIds().size());
+        for (int genreId : film.getGenreIds()) {
+            out.writeInt(genreId);
+        }
+        long[] likes = film.getLikes().toLongArray();
+        out.writeInt(likes.length);
+        for (long userId : likes) {
+            out.writeLong(userId);
+        }
+    }
+
+    private static Film readFilm(ByteBuffer in) {
+        Film film = new Film();
+        film.setId(in.getLong());
+        film.setName(WriteAheadLog.readString(in));
+        film.setDescription(WriteAheadLog.readString(in));
+        film.setReleaseDate(WriteAheadLog.readDate(in));
+        film.setDuration(in.getInt());
+        int mpaId = in.getInt();
+        film.setMpaId(mpaId == 0 ? null : mpaId);
+        int genres = in.getInt();
+        Set<Integer> genreIds = new LinkedHashSet<>();
+        for (int i = 0; i < genres; i++) {
+            genreIds.add(in.getInt());
+        }
+        film.setGenreIds(genreIds);
+        int likeCount = in.getInt();
+        SortedLongSet likes = new SortedLongSet();
+        for (int i = 0; i < likeCount; i++) {
+            likes.add(in.getLong());
+        }
+        film.setLikes(likes);
+        return film;
+    }
+
+    /**
+     * Снимок — следующий id и все фильмы с лайками; записи журнала применяются без повторной записи.
+     */
+    private class Recovery implements WriteAheadLog.Target {
+
+        @Override
+        public void loadSnapshot(ByteBuffer in) {
+            nextId.set(in.getLong());
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                applySave(readFilm(in));
+            }
+        }
+
+        @Override
+        public void replay(ByteBuffer record) {
+            byte type = record.get();
+            switch (type) {
+                case SAVED -> {
+                    Film film = readFilm(record);
+                    applySave(film);
+                    nextId.accumulateAndGet(film.getId() + 1, Math::max);
+                }
+                case UPDATED -> {
+                    Film film = readFilm(record);
+                    if (films.containsKey(film.getId())) {
+                        applyUpdate(film);
+                    }
+                }
+                case DELETED -> {
+                    long id = record.getLong();
+                    if (films.containsKey(id)) {
+                        applyDelete(id);
+                    }
+                }
+                case LIKE_ADDED, LIKE_REMOVED -> {
+                    long filmId = record.getLong();
+                    long userId = record.getLong();
+                    if (films.containsKey(filmId)) {
+                        applyLikes(type, filmId, userId);
+                    }
+                }
+                default -> throw new IllegalStateException("Неизвестная запись журнала фильмов: " + type);
+            }
+        }
+
+        @Override
+        public WriteAheadLog.SnapshotWriter captureSnapshot() {
+            long next = nextId.get();
+            List<Film> captured = List.copyOf(films.values());
+            return out -> {
+                out.writeLong(next);
+                out.writeInt(captured.size());
+                for (Film film : captured) {
+                    writeFilm(out, film);
+                }
+            };
+        }
+    }
+
+    @Override
+    public List<Film> search(String query, int limit) {
+        return searchIndex.search(query, limit).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
     public List<Film> getPopular(int count) {
+        return getPopular(count, null, null, null);
+    }
+
+    @Override
+    public List<Film> getPopular(int count, Integer genreId, Integer mpaId, Integer year) {
+        Predicate<Film> filter = film -> (genreId == null || film.getGenreIds().contains(genreId))
+                && (mpaId == null || mpaId.equals(film.getMpaId()))
+                && (year == null || film.getReleaseDate() != null && film.getReleaseDate().getYear() == year);
+        FilmSnapshot published = snapshot;
+        if (published != null) {
+            return genreId == null && mpaId == null && year == null
+                    ? published.popular(count)
+                    : published.popular(count, filter);
+        }
         return films.values().stream()
+                .filter(filter)
                 .sorted((f1, f2) -> Integer.compare(f2.getLikes().size(), f1.getLikes().size()))
                 .limit(count)
                 .collect(Collectors.toList());
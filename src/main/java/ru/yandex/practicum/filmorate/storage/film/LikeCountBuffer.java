@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Накопитель изменений счётчика лайков между сбросами в колонку films.like_count.
+ * Каждый фильм получает собственный счётчик, поэтому запись лайков к разным фильмам не конкурирует.
+ */
+class LikeCountBuffer {
+
+    private final Map<Long, AtomicLong> deltas = new ConcurrentHashMap<>();
+
+    void add(long filmId, long delta) {
+        deltas.computeIfAbsent(filmId, id -> new AtomicLong()).addAndGet(delta);
+    }
+
+    Map<Long, Long> drain() {
+        Map<Long, Long> drained = new HashMap<>();
+        deltas.forEach((filmId, counter) -> {
+            long delta = counter.getAndSet(0);
+            if (delta != 0) {
+                drained.put(filmId, delta);
+            }
+        });
+        return drained;
+    }
+
+    void forget(long filmId) {
+        deltas.remove(filmId);
+    }
+}
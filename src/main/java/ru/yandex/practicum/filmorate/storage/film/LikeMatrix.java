@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Разреженная матрица «пользователь — фильм» в памяти: для каждого пользователя — отсортированный массив
+ * id понравившихся фильмов, для каждого фильма — отсортированный массив id лайкнувших пользователей.
+ * Массивы не изменяются на месте: лайк подменяет их копиями, поэтому читатели не блокируются.
+ * <p>
+ * Каждая строка помнит версию своего последнего изменения: значение общих часов, которое выдаётся уже после
+ * подмены массива. Поэтому тот, кто прочитал {@link #clock()} до чтения строк, увидит у изменённой
+ * позже строки версию больше прочитанной.
+ */
+class LikeMatrix {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, long[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> usersByFilm = new ConcurrentHashMap<>();
+    private final Map<Long, Long> userVersions = new ConcurrentHashMap<>();
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private volatile long rebuiltAt;
+
+    synchronized void rebuild(Map<Long, long[]> sortedFilmsByUser, Map<Long, long[]> sortedUsersByFilm) {
+        filmsByUser.clear();
+        usersByFilm.clear();
+        filmsByUser.putAll(sortedFilmsByUser);
+        usersByFilm.putAll(sortedUsersByFilm);
+        userVersions.clear();
+        filmVersions.clear();
+        rebuiltAt = clock.incrementAndGet();
+    }
+
+    void add(long userId, long filmId) {
+        filmsByUser.compute(userId, (id, films) -> with(films, filmId));
+        usersByFilm.compute(filmId, (id, users) -> with(users, userId));
+        touch(userVersions, userId, touch(filmVersions, filmId, clock.incrementAndGet()));
+    }
+
+    void remove(long userId, long filmId) {
+        filmsByUser.computeIfPresent(userId, (id, films) -> without(films, filmId));
+        usersByFilm.computeIfPresent(filmId, (id, users) -> without(users, userId));
+        touch(userVersions, userId, touch(filmVersions, filmId, clock.incrementAndGet()));
+    }
+
+    void removeFilm(long filmId) {
+        long[] users = usersByFilm.remove(filmId);
+        if (users != null) {
+            for (long userId : users) {
+                filmsByUser.computeIfPresent(userId, (id, films) -> without(films, filmId));
+            }
+        }
+        long version = touch(filmVersions, filmId, clock.incrementAndGet());
+        if (users != null) {
+            for (long userId : users) {
+                touch(userVersions, userId, version);
+            }
+        }
+    }
+
+    long[] filmsOf(long userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    long[] usersOf(long filmId) {
+        return usersByFilm.getOrDefault(filmId, EMPTY);
+    }
+
+    /**
+     * Текущее значение часов; строки, изменённые после чтения, получат версию больше него.
+     */
+    long clock() {
+        return clock.get();
+    }
+
+    long userVersion(long userId) {
+        return userVersions.getOrDefault(userId, rebuiltAt);
+    }
+
+    long filmVersion(long filmId) {
+        return filmVersions.getOrDefault(filmId, rebuiltAt);
+    }
+
+    private static long touch(Map<Long, Long> versions, long id, long version) {
+        versions.merge(id, version, Math::max);
+        return version;
+    }
+
+    static boolean contains(long[] sorted, long value) {
+        return Arrays.binarySearch(sorted, value) >= 0;
+    }
+
+    private static long[] with(long[] sorted, long value) {
+        if (sorted == null) {
+            return new long[]{value};
+        }
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return sorted;
+        }
+        int insertAt = -index - 1;
+        long[] result = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+        return result;
+    }
+
+    private static long[] without(long[] sorted, long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return sorted;
+        }
+        if (sorted.length == 1) {
+            return null;
+        }
+        long[] result = new long[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage.genre;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш справочника жанров: загружается целиком при старте и отдаётся из неизменяемого массива по id.
+ * Обращение к БД происходит только при промахе или после явной инвалидации.
+ */
+@Slf4j
+@Primary
+@Component
+public class CachedGenreStorage implements GenreStorage {
+
+    private final GenreStorage delegate;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(List.of(), new GenreDto[0]);
+
+    public CachedGenreStorage(@Qualifier("genreDbStorage") GenreStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @PostConstruct
+    public void invalidate() {
+        List<GenreDto> genres = List.copyOf(delegate.getAllGenres());
+        int maxId = genres.stream().mapToInt(GenreDto::getId).max().orElse(-1);
+        GenreDto[] byId = new GenreDto[maxId + 1];
+        for (GenreDto genre : genres) {
+            byId[genre.getId()] = genre;
+        }
+        snapshot = new Snapshot(genres, byId);
+        log.info("Справочник жанров загружен в кэш: {} записей", genres.size());
+    }
+
+    @Override
+    public List<GenreDto> getAllGenres() {
+        hits.incrementAndGet();
+        return snapshot.all();
+    }
+
+    @Override
+    public GenreDto getGenreById(int id) {
+        GenreDto[] byId = snapshot.byId();
+        if (id >= 0 && id < byId.length && byId[id] != null) {
+            hits.incrementAndGet();
+            return byId[id];
+        }
+        misses.incrementAndGet();
+        GenreDto genre = delegate.getGenreById(id);
+        invalidate();
+        return genre;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private record Snapshot(List<GenreDto> all, GenreDto[] byId) {
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+public record JournalRecord(Type type, long first, long second) {
+
+    public enum Type {
+        LIKE_ADDED,
+        LIKE_REMOVED,
+        FRIEND_ADDED,
+        FRIEND_REMOVED
+    }
+
+    public static JournalRecord likeAdded(long filmId, long userId) {
+        return new JournalRecord(Type.LIKE_ADDED, filmId, userId);
+    }
+
+    public static JournalRecord likeRemoved(long filmId, long userId) {
+        return new JournalRecord(Type.LIKE_REMOVED, filmId, userId);
+    }
+
+    public static JournalRecord friendAdded(long userId, long friendId) {
+        return new JournalRecord(Type.FRIEND_ADDED, userId, friendId);
+    }
+
+    public static JournalRecord friendRemoved(long userId, long friendId) {
+        return new JournalRecord(Type.FRIEND_REMOVED, userId, friendId);
+    }
+}
@@ -0,0 +1,396 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Журнал упреждающей записи для хранилищ в памяти.
+ * <p>
+ * Каждое изменение дописывается в текущий сегмент журнала ({@code <name>-<номер>.log}) до того, как
+ * становится видно читателям. Изменения выполняются под общим замком журнала, поэтому порядок записей
+ * совпадает с порядком применения. Фоновый поток периодически снимает компактный двоичный снимок
+ * ({@code <name>.snapshot}): под замком переключает журнал на новый сегмент и фиксирует состояние,
+ * затем без замка пишет снимок во временный файл, атомарно переименовывает его и удаляет сегменты,
+ * которые снимок покрывает.
+ * <p>
+ * При открытии снимок читается через отображение файла в память, затем проигрываются сегменты новее
+ * снимка. Недописанная или повреждённая запись в конце сегмента отбрасывается вместе с хвостом.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int SNAPSHOT_MAGIC = 0x464D5331;
+    private static final int FRAME_HEADER = Integer.BYTES + Integer.BYTES;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final String name;
+    private final boolean fsync;
+    private final Pattern segmentName;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final Object snapshotLock = new Object();
+
+    private Target target;
+    private FileChannel segment;
+    private long segmentNumber;
+    private Thread snapshotter;
+    private volatile boolean running;
+
+    /**
+     * Хранилище, состояние которого восстанавливается из журнала.
+     */
+    public interface Target {
+
+        /**
+         * Заменяет состояние содержимым снимка.
+         */
+        void loadSnapshot(ByteBuffer snapshot);
+
+        /**
+         * Применяет одну запись журнала, не записывая её повторно.
+         */
+        void replay(ByteBuffer record);
+
+        /**
+         * Фиксирует текущее состояние; вызывается под замком журнала, поэтому должно только собрать ссылки,
+         * а сериализацию оставить возвращаемому {@link SnapshotWriter}.
+         */
+        SnapshotWriter captureSnapshot();
+    }
+
+    @FunctionalInterface
+    public interface SnapshotWriter {
+        void writeTo(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RecordWriter {
+        void writeTo(DataOutput out) throws IOException;
+    }
+
+    /**
+     * @param fsync сбрасывать ли каждую запись на диск; без этого запись переживает падение процесса,
+     *              но не отключение питания
+     */
+    public WriteAheadLog(Path directory, String name, boolean fsync) {
+        this.directory = directory;
+        this.name = name;
+        this.fsync = fsync;
+        this.segmentName = Pattern.compile(Pattern.quote(name) + "-(\\d+)\\.log");
+    }
+
+    /**
+     * Восстанавливает состояние хранилища и начинает новый сегмент. Если были проиграны записи журнала,
+     * сразу снимает снимок, чтобы следующий запуск их не повторял. Снимки далее снимаются раз в
+     * {@code snapshotInterval}, если за это время что-то изменилось.
+     */
+    public void open(Target target, Duration snapshotInterval) {
+        this.target = target;
+        long replayed;
+        try {
+            Files.createDirectories(directory);
+            long covered = loadSnapshot();
+            replayed = replaySegments(covered);
+            segmentNumber = Math.max(covered, lastSegmentNumber()) + 1;
+            segment = openSegment(segmentNumber);
+            deleteSegmentsUpTo(covered);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилище из " + directory, e);
+        }
+        if (replayed > 0) {
+            log.info("Из журнала {} восстановлено изменений: {}", name, replayed);
+            snapshot();
+        }
+
+        running = true;
+        long intervalNanos = snapshotInterval.toNanos();
+        snapshotter = Thread.ofPlatform().daemon().name(name + "-snapshotter").start(() -> {
+            while (running) {
+                LockSupport.parkNanos(intervalNanos);
+                if (running && segmentSize() > 0) {
+                    snapshot();
+                }
+            }
+        });
+    }
+
+    /**
+     * Выполняет изменение под замком журнала. Изменение записывает себя через {@link #append} и только
+     * затем применяется к структурам хранилища.
+     */
+    public synchronized <T> T write(Supplier<T> mutation) {
+        return mutation.get();
+    }
+
+    public synchronized void append(RecordWriter writer) {
+        try {
+            recordBytes.reset();
+            writer.writeTo(recordOut);
+            byte[] record = recordBytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + record.length)
+                    .putInt(record.length)
+                    .putInt((int) crc.getValue())
+                    .put(record)
+                    .flip();
+            while (frame.hasRemaining()) {
+                segment.write(frame);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать изменение в журнал " + name, e);
+        }
+    }
+
+    /**
+     * Снимает снимок немедленно.
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            long covered;
+            SnapshotWriter writer;
+            synchronized (this) {
+                writer = target.captureSnapshot();
+                covered = segmentNumber;
+                rotate();
+            }
+            try {
+                writeSnapshot(covered, writer);
+                deleteSegmentsUpTo(covered);
+            } catch (IOException e) {
+                log.error("Не удалось записать снимок {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (snapshotter != null) {
+            LockSupport.unpark(snapshotter);
+            try {
+                snapshotter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (segmentSize() > 0) {
+            snapshot();
+        }
+        synchronized (this) {
+            try {
+                segment.force(true);
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Ошибка при закрытии журнала {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized long segmentSize() {
+        try {
+            return segment.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void rotate() {
+        try {
+            segment.force(true);
+            segment.close();
+            segment = openSegment(++segmentNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось начать новый сегмент журнала " + name, e);
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void writeSnapshot(long covered, SnapshotWriter writer) throws IOException {
+        Path temporary = directory.resolve(name + ".snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(SNAPSHOT_MAGIC);
+            header.writeLong(covered);
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream body = new DataOutputStream(checked);
+            writer.writeTo(body);
+            body.writeInt((int) checked.getChecksum().getValue());
+            body.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshotPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Снимок {} записан, покрывает журнал до сегмента {}", name, covered);
+    }
+
+    /**
+     * Номер последнего сегмента, который покрывает снимок; 0 — снимка нет.
+     */
+    private long loadSnapshot() throws IOException {
+        Path path = snapshotPath();
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Снимок " + path + " больше 2 ГБ");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyStart = Integer.BYTES + Long.BYTES;
+            if (size < bodyStart + Integer.BYTES || mapped.getInt(0) != SNAPSHOT_MAGIC) {
+                throw new IOException("Файл " + path + " не является снимком");
+            }
+            long covered = mapped.getLong(Integer.BYTES);
+            int bodyEnd = (int) size - Integer.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(bodyStart, bodyEnd - bodyStart));
+            if ((int) crc.getValue() != mapped.getInt(bodyEnd)) {
+                throw new IOException("Контрольная сумма снимка " + path + " не совпадает");
+            }
+            target.loadSnapshot(mapped.slice(bodyStart, bodyEnd - bodyStart));
+            log.info("Снимок {} загружен ({} байт), покрывает журнал до сегмента {}", name, size, covered);
+            return covered;
+        }
+    }
+
+    private long replaySegments(long covered) throws IOException {
+        long replayed = 0;
+        for (long number : segmentNumbers()) {
+            if (number > covered) {
+                replayed += replaySegment(segmentPath(number));
+            }
+        }
+        return replayed;
+    }
+
+    private long replaySegment(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент журнала " + path + " больше 2 ГБ");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long replayed = 0;
+            int position = 0;
+            while (position + FRAME_HEADER <= size) {
+                int length = mapped.getInt(position);
+                int checksum = mapped.getInt(position + Integer.BYTES);
+                int start = position + FRAME_HEADER;
+                if (length < 0 || start + (long) length > size) {
+                    break;
+                }
+                ByteBuffer record = mapped.slice(start, length);
+                CRC32 crc = new CRC32();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                target.replay(record);
+                replayed++;
+                position = start + length;
+            }
+            if (position < size) {
+                log.warn("Отброшен неполный хвост журнала {}: {} байт", path.getFileName(), size - position);
+                channel.truncate(position);
+            }
+            return replayed;
+        }
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> segmentName.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long lastSegmentNumber() throws IOException {
+        List<Long> numbers = segmentNumbers();
+        return numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1);
+    }
+
+    private void deleteSegmentsUpTo(long covered) throws IOException {
+        for (long number : segmentNumbers()) {
+            if (number <= covered) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s-%010d.log", name, number));
+    }
+
+    private Path snapshotPath() {
+        return directory.resolve(name + ".snapshot");
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeDate(DataOutput out, LocalDate value) throws IOException {
+        out.writeLong(value == null ? NO_DATE : value.toEpochDay());
+    }
+
+    public static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -0,0 +1,348 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал отложенной записи лайков и дружбы.
+ * <p>
+ * Изменение подтверждается вызывающему после того, как оно дописано в файл журнала и сброшено на диск;
+ * записи, накопившиеся за время одного fsync, сбрасываются вместе (group commit).
+ * Фоновый поток применяет подтверждённые записи к БД пачками через зарегистрированные обработчики.
+ * При старте журнал проигрывается целиком, поэтому обработчики обязаны быть идемпотентными.
+ */
+@Slf4j
+@Component
+public class WriteBehindJournal implements SmartLifecycle {
+
+    private static final int RECORD_SIZE = 1 + Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int MAX_BATCH = 4096;
+    private static final long TRUNCATE_THRESHOLD = 1L << 20;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final JournalRecord.Type[] TYPES = JournalRecord.Type.values();
+
+    private final boolean enabled;
+    private final Path path;
+    private final Map<JournalRecord.Type, Consumer<List<JournalRecord>>> appliers =
+            new EnumMap<>(JournalRecord.Type.class);
+    private final BlockingQueue<PendingRecord> pending = new LinkedBlockingQueue<>();
+    private final BlockingQueue<JournalRecord> committed = new LinkedBlockingQueue<>();
+    private final Object fileLock = new Object();
+
+    private FileChannel channel;
+    private Thread committer;
+    private Thread drainer;
+    private volatile boolean running;
+    private volatile boolean unapplied;
+
+    public WriteBehindJournal(@Value("${filmorate.write-behind.enabled:false}") boolean enabled,
+                              @Value("${filmorate.write-behind.path:./db/write-behind.journal}") Path path) {
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void register(JournalRecord.Type type, Consumer<List<JournalRecord>> applier) {
+        appliers.put(type, applier);
+    }
+
+    public void append(JournalRecord record) {
+        if (!running) {
+            throw new IllegalStateException("Журнал отложенной записи не запущен");
+        }
+        CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+        pending.add(new PendingRecord(record, acknowledged));
+        try {
+            acknowledged.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запись в журнал прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось записать изменение в журнал", e.getCause());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + path, e);
+        }
+
+        running = true;
+        committer = new Thread(this::commitLoop, "journal-committer");
+        drainer = new Thread(this::drainLoop, "journal-drainer");
+        committer.start();
+        drainer.start();
+        log.info("Журнал отложенной записи запущен: {}", path.toAbsolutePath());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        joinQuietly(committer);
+        joinQuietly(drainer);
+
+        PendingRecord left;
+        while ((left = pending.poll()) != null) {
+            left.acknowledged().completeExceptionally(new IllegalStateException("Журнал остановлен"));
+        }
+
+        synchronized (fileLock) {
+            try {
+                if (!unapplied && committed.isEmpty()) {
+                    channel.truncate(0);
+                }
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Ошибка при закрытии журнала: {}", e.getMessage());
+            }
+        }
+        log.info("Журнал отложенной записи остановлен");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Запускается раньше веб-сервера и останавливается после него
+        return 0;
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        List<JournalRecord> batch = new ArrayList<>(MAX_BATCH);
+        long position = 0;
+        long replayed = 0;
+
+        while (position + RECORD_SIZE <= size) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            JournalRecord record = decode(buffer);
+            if (record == null) {
+                break;
+            }
+            batch.add(record);
+            position += RECORD_SIZE;
+            if (batch.size() == MAX_BATCH) {
+                apply(batch);
+                replayed += batch.size();
+                batch.clear();
+            }
+        }
+        apply(batch);
+        replayed += batch.size();
+
+        if (position < size) {
+            log.warn("Отброшен неполный хвост журнала: {} байт", size - position);
+        }
+        if (replayed > 0) {
+            log.info("Из журнала восстановлено изменений: {}", replayed);
+        }
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    private void commitLoop() {
+        List<PendingRecord> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_BATCH * RECORD_SIZE);
+
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingRecord first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH - 1);
+
+                buffer.clear();
+                for (PendingRecord record : batch) {
+                    encode(record.record(), buffer);
+                }
+                buffer.flip();
+                write(buffer, batch);
+                batch.forEach(record -> record.acknowledged().complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Не удалось дописать журнал: {}", e.getMessage());
+                batch.forEach(record -> record.acknowledged().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer, List<PendingRecord> batch) throws IOException {
+        synchronized (fileLock) {
+            long start = channel.position();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                // Недописанная пачка не должна оставаться в файле перед следующими записями
+                channel.truncate(start);
+                throw e;
+            }
+            for (PendingRecord record : batch) {
+                committed.add(record.record());
+            }
+        }
+    }
+
+    private void drainLoop() {
+        List<JournalRecord> batch = new ArrayList<>(MAX_BATCH);
+
+        while (running || committer.isAlive() || !committed.isEmpty()) {
+            try {
+                JournalRecord first = committed.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    committed.drainTo(batch, MAX_BATCH - 1);
+                    applyWithRetry(batch);
+                    batch.clear();
+                }
+                if (unapplied) {
+                    return;
+                }
+                truncateIfDrained();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void applyWithRetry(List<JournalRecord> batch) throws InterruptedException {
+        while (true) {
+            try {
+                apply(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    unapplied = true;
+                    log.error("Изменения не применены к БД и будут восстановлены из журнала при перезапуске: {}",
+                            e.getMessage());
+                    return;
+                }
+                log.warn("Не удалось применить изменения из журнала, повтор через {} мс: {}",
+                        RETRY_DELAY_MS, e.getMessage());
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private void apply(List<JournalRecord> batch) {
+        int from = 0;
+        while (from < batch.size()) {
+            JournalRecord.Type type = batch.get(from).type();
+            int to = from + 1;
+            while (to < batch.size() && batch.get(to).type() == type) {
+                to++;
+            }
+            Consumer<List<JournalRecord>> applier = appliers.get(type);
+            if (applier == null) {
+                throw new IllegalStateException("Нет обработчика для записей журнала " + type);
+            }
+            applier.accept(batch.subList(from, to));
+            from = to;
+        }
+    }
+
+    private void truncateIfDrained() {
+        synchronized (fileLock) {
+            try {
+                if (committed.isEmpty() && channel.size() >= TRUNCATE_THRESHOLD) {
+                    channel.truncate(0);
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось усечь журнал: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void encode(JournalRecord record, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.put((byte) record.type().ordinal())
+                .putLong(record.first())
+                .putLong(record.second());
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, RECORD_SIZE - Integer.BYTES);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static JournalRecord decode(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, RECORD_SIZE - Integer.BYTES);
+        int typeIndex = buffer.get();
+        long first = buffer.getLong();
+        long second = buffer.getLong();
+        int checksum = buffer.getInt();
+        if (checksum != (int) crc.getValue() || typeIndex < 0 || typeIndex >= TYPES.length) {
+            return null;
+        }
+        return new JournalRecord(TYPES[typeIndex], first, second);
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingRecord(JournalRecord record, CompletableFuture<Void> acknowledged) {
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш справочника рейтингов MPA: загружается целиком при старте и отдаётся из неизменяемого массива по id.
+ * Обращение к БД происходит только при промахе или после явной инвалидации.
+ */
+@Slf4j
+@Primary
+@Component
+public class CachedMpaStorage implements MpaStorage {
+
+    private final MpaStorage delegate;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(List.of(), new MpaDto[0]);
+
+    public CachedMpaStorage(@Qualifier("mpaDbStorage") MpaStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @PostConstruct
+    public void invalidate() {
+        List<MpaDto> ratings = List.copyOf(delegate.getAllMpa());
+        int maxId = ratings.stream().mapToInt(MpaDto::getId).max().orElse(-1);
+        MpaDto[] byId = new MpaDto[maxId + 1];
+        for (MpaDto mpa : ratings) {
+            byId[mpa.getId()] = mpa;
+        }
+        snapshot = new Snapshot(ratings, byId);
+        log.info("Справочник MPA загружен в кэш: {} записей", ratings.size());
+    }
+
+    @Override
+    public List<MpaDto> getAllMpa() {
+        hits.incrementAndGet();
+        return snapshot.all();
+    }
+
+    @Override
+    public MpaDto getMpaById(int id) {
+        MpaDto[] byId = snapshot.byId();
+        if (id >= 0 && id < byId.length && byId[id] != null) {
+            hits.incrementAndGet();
+            return byId[id];
+        }
+        misses.incrementAndGet();
+        MpaDto mpa = delegate.getMpaById(id);
+        invalidate();
+        return mpa;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private record Snapshot(List<MpaDto> all, MpaDto[] byId) {
+    }
+}
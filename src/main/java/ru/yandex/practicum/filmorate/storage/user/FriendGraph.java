@@ -0,0 +1,232 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф дружбы в памяти для обхода на два шага.
+ * <p>
+ * Основа — неизменяемый снимок в формате CSR: отсортированные id пользователей, смещения их строк
+ * и общий массив id друзей. Изменения после снимка хранятся построчно в карте поверх него
+ * и периодически вливаются в новый снимок методом {@link #compact()}.
+ */
+class FriendGraph {
+
+    private static final long[] EMPTY = new long[0];
+
+    private volatile Snapshot snapshot = Snapshot.of(Map.of());
+    private final Map<Long, long[]> overrides = new ConcurrentHashMap<>();
+
+    synchronized void rebuild(Map<Long, long[]> sortedFriendIds) {
+        snapshot = Snapshot.of(sortedFriendIds);
+        overrides.clear();
+    }
+
+    void add(long userId, long friendId) {
+        overrides.compute(userId, (id, row) -> {
+            long[] current = row != null ? row : snapshot.row(id);
+            int index = Arrays.binarySearch(current, friendId);
+            if (index >= 0) {
+                return current;
+            }
+            int insertAt = -index - 1;
+            long[] next = new long[current.length + 1];
+            System.arraycopy(current, 0, next, 0, insertAt);
+            next[insertAt] = friendId;
+            System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+            return next;
+        });
+    }
+
+    void remove(long userId, long friendId) {
+        overrides.compute(userId, (id, row) -> {
+            long[] current = row != null ? row : snapshot.row(id);
+            int index = Arrays.binarySearch(current, friendId);
+            if (index < 0) {
+                return current;
+            }
+            long[] next = new long[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            return next;
+        });
+    }
+
+    void removeUser(long userId) {
+        overrides.put(userId, EMPTY);
+    }
+
+    long[] friendsOf(long userId) {
+        long[] row = overrides.get(userId);
+        return row != null ? row : snapshot.row(userId);
+    }
+
+    int pendingChanges() {
+        return overrides.size();
+    }
+
+    /**
+     * Вливает накопленные изменения в новый снимок. Строки, изменённые во время сборки, остаются в карте.
+     */
+    synchronized void compact() {
+        if (overrides.isEmpty()) {
+            return;
+        }
+        Map<Long, long[]> applied = Map.copyOf(overrides);
+        Snapshot current = snapshot;
+        Map<Long, long[]> rows = new TreeMap<>();
+        for (int i = 0; i < current.userIds.length; i++) {
+            rows.put(current.userIds[i], Arrays.copyOfRange(current.targets, current.offsets[i], current.offsets[i + 1]));
+        }
+        applied.forEach((userId, row) -> {
+            if (row.length == 0) {
+                rows.remove(userId);
+            } else {
+                rows.put(userId, row);
+            }
+        });
+        snapshot = Snapshot.of(rows);
+        applied.forEach(overrides::remove);
+    }
+
+    /**
+     * Друзья друзей, которые ещё не в друзьях, по убыванию числа общих друзей, при равенстве — по id.
+     */
+    long[] suggestions(long userId, int count) {
+        long[] friends = friendsOf(userId);
+        LongIntCounter mutual = new LongIntCounter(Math.max(16, friends.length * 4));
+        Snapshot current = snapshot;
+        for (long friendId : friends) {
+            long[] row = overrides.get(friendId);
+            long[] targets = row != null ? row : current.targets();
+            int from = 0;
+            int to = row != null ? row.length : 0;
+            if (row == null) {
+                int index = Arrays.binarySearch(current.userIds(), friendId);
+                if (index < 0) {
+                    continue;
+                }
+                from = current.offsets()[index];
+                to = current.offsets()[index + 1];
+            }
+            for (int i = from; i < to; i++) {
+                long candidate = targets[i];
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    mutual.increment(candidate);
+                }
+            }
+        }
+
+        PriorityQueue<long[]> best = new PriorityQueue<>(count + 1, (a, b) -> a[1] != b[1]
+                ? Long.compare(a[1], b[1])
+                : Long.compare(b[0], a[0]));
+        mutual.forEach((candidate, mutualCount) -> {
+            best.add(new long[]{candidate, mutualCount});
+            if (best.size() > count) {
+                best.poll();
+            }
+        });
+        List<long[]> ranked = new ArrayList<>(best);
+        ranked.sort(best.comparator().reversed());
+        return ranked.stream().mapToLong(pair -> pair[0]).toArray();
+    }
+
+    private record Snapshot(long[] userIds, int[] offsets, long[] targets) {
+
+        static Snapshot of(Map<Long, long[]> sortedFriendIds) {
+            long[] userIds = sortedFriendIds.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            int[] offsets = new int[userIds.length + 1];
+            for (int i = 0; i < userIds.length; i++) {
+                offsets[i + 1] = offsets[i] + sortedFriendIds.get(userIds[i]).length;
+            }
+            long[] targets = new long[offsets[userIds.length]];
+            for (int i = 0; i < userIds.length; i++) {
+                long[] row = sortedFriendIds.get(userIds[i]);
+                System.arraycopy(row, 0, targets, offsets[i], row.length);
+            }
+            return new Snapshot(userIds, offsets, targets);
+        }
+
+        long[] row(long userId) {
+            int index = Arrays.binarySearch(userIds, userId);
+            if (index < 0) {
+                return EMPTY;
+            }
+            return Arrays.copyOfRange(targets, offsets[index], offsets[index + 1]);
+        }
+    }
+
+    /**
+     * Счётчик long → int с открытой адресацией, без упаковки ключей.
+     */
+    private static final class LongIntCounter {
+        private long[] keys;
+        private int[] counts;
+        private boolean[] used;
+        private int size;
+
+        LongIntCounter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            used = new boolean[capacity];
+        }
+
+        void increment(long key) {
+            int slot = slot(keys, used, key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(keys, used, key);
+                }
+            }
+            counts[slot]++;
+        }
+
+        void forEach(Visitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    visitor.visit(keys[i], counts[i]);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slot(keys, used, oldKeys[i]);
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slot(long[] keys, boolean[] used, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        @FunctionalInterface
+        interface Visitor {
+            void visit(long key, int count);
+        }
+    }
+}
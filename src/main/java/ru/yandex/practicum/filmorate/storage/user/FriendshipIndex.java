@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс смежности дружбы в памяти для поиска общих друзей: для каждого пользователя — битовое множество его друзей.
+ * Обновление одного пользователя атомарно заменяет его множество, читатели не блокируются.
+ */
+class FriendshipIndex {
+
+    private final Map<Long, LongBitmap> friends = new ConcurrentHashMap<>();
+
+    void rebuild(Map<Long, long[]> sortedFriendIds) {
+        friends.clear();
+        sortedFriendIds.forEach((userId, ids) -> friends.put(userId, LongBitmap.of(ids)));
+    }
+
+    void add(long userId, long friendId) {
+        friends.compute(userId, (id, bitmap) -> (bitmap == null ? LongBitmap.EMPTY : bitmap).with(friendId));
+    }
+
+    void remove(long userId, long friendId) {
+        friends.computeIfPresent(userId, (id, bitmap) -> bitmap.without(friendId));
+    }
+
+    void removeUser(long userId) {
+        friends.remove(userId);
+    }
+
+    long[] commonFriends(long userId, long otherId) {
+        LongBitmap first = friends.get(userId);
+        LongBitmap second = friends.get(otherId);
+        if (first == null || second == null) {
+            return new long[0];
+        }
+        return first.and(second);
+    }
+}
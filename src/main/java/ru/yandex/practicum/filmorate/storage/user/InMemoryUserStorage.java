@@ -3,26 +3,87 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryStorageOptions;
+import ru.yandex.practicum.filmorate.storage.journal.WriteAheadLog;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Хранилище пользователей в памяти. Как и в {@link ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage},
+ * изменение друзей атомарно подменяет запись копией, читатели работают без блокировок.
+ * В надёжном режиме изменения, как и там, сначала дописываются в {@link WriteAheadLog}.
+ */
 @Slf4j
-public class InMemoryUserStorage implements UserStorage {
+public class InMemoryUserStorage implements UserStorage, AutoCloseable {
+
+    private static final byte SAVED = 1;
+    private static final byte UPDATED = 2;
+    private static final byte DELETED = 3;
+    private static final byte FRIEND_ADDED = 4;
+    private static final byte FRIEND_REMOVED = 5;
 
     private final Map<Long, User> users = new ConcurrentHashMap<>();
-    private long nextId = 1;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong version = new AtomicLong();
+    private final List<LongConsumer> deleteListeners = new CopyOnWriteArrayList<>();
+    private final WriteAheadLog writeAheadLog;
+
+    public InMemoryUserStorage() {
+        this(InMemoryStorageOptions.defaults());
+    }
+
+    /**
+     * Учитывает только надёжный режим: списков, которые стоило бы читать из снимка, у пользователей нет.
+     */
+    public InMemoryUserStorage(InMemoryStorageOptions options) {
+        if (options.isDurable()) {
+            writeAheadLog = new WriteAheadLog(options.directory(), "users", false);
+            writeAheadLog.open(new Recovery(), options.snapshotInterval());
+        } else {
+            writeAheadLog = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
 
     @Override
     public List<User> findAll() {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        long after = afterId == null ? 0 : afterId;
+        return users.values().stream()
+                .filter(user -> user.getId() > after)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User findById(Long id) {
         User user = users.get(id);
@@ -32,44 +93,277 @@ public class InMemoryUserStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public boolean exists(Long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return users.keySet().containsAll(ids);
+    }
+
     @Override
     public User save(User user) {
         validateUser(user);
-        user.setId(nextId++);
+        return durably(() -> {
+            user.setId(nextId.getAndIncrement());
+            appendToLog(SAVED, out -> writeUser(out, user));
+            applySave(user);
+            log.info("Сохранён пользователь: {}", user.getLogin());
+            return user;
+        });
+    }
+
+    private void applySave(User user) {
         users.put(user.getId(), user);
-        log.info("Сохранён пользователь: {}", user.getLogin());
-        return user;
+        version.incrementAndGet();
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        users.forEach(this::save);
+        return users;
     }
 
     @Override
     public User update(User user) {
         validateUser(user);
-        if (!users.containsKey(user.getId())) {
+        return durably(() -> {
+            requireUser(user.getId());
+            appendToLog(UPDATED, out -> writeUser(out, user));
+            applyUpdate(user);
+            log.info("Обновлён пользователь: {}", user.getLogin());
+            return user;
+        });
+    }
+
+    private void applyUpdate(User user) {
+        User updated = users.computeIfPresent(user.getId(), (id, current) -> {
+            user.setFriends(current.getFriends());
+            return user;
+        });
+        if (updated == null) {
             throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
         }
-        users.put(user.getId(), user);
-        log.info("Обновлён пользователь: {}", user.getLogin());
-        return user;
+        version.incrementAndGet();
     }
 
     @Override
     public void deleteById(Long id) {
-        if (!users.containsKey(id)) {
+        deleteListeners.forEach(listener -> listener.accept(id));
+        durably(() -> {
+            requireUser(id);
+            appendToLog(DELETED, out -> out.writeLong(id));
+            applyDelete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void addDeleteListener(LongConsumer listener) {
+        deleteListeners.add(listener);
+    }
+
+    private void applyDelete(long id) {
+        if (users.remove(id) == null) {
             throw new NotFoundException("Пользователь с id=" + id + " не найден");
         }
-        users.remove(id);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
     }
 
     @Override
     public void addFriend(Long userId, Long friendId) {
-        User user = findById(userId);
-        user.getFriends().add(friendId);
+        changeFriends(FRIEND_ADDED, userId, friendId);
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
-        User user = findById(userId);
-        user.getFriends().remove(friendId);
+        changeFriends(FRIEND_REMOVED, userId, friendId);
+    }
+
+    @Override
+    public int[] addFriends(long[] userIds, long[] friendIds) {
+        int[] added = new int[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            if (exists(userIds[i]) && exists(friendIds[i])) {
+                addFriend(userIds[i], friendIds[i]);
+                added[i] = 1;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        SortedLongSet friends = findById(userId).getFriends();
+        Map<Long, Integer> mutual = new HashMap<>();
+        for (Long friendId : friends) {
+            User friend = users.get(friendId);
+            if (friend == null) {
+                continue;
+            }
+            for (Long candidate : friend.getFriends()) {
+                if (!candidate.equals(userId) && !friends.contains(candidate.longValue())) {
+                    mutual.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        return mutual.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> users.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    private void changeFriends(byte type, long userId, long friendId) {
+        durably(() -> {
+            requireUser(userId);
+            appendToLog(type, out -> {
+                out.writeLong(userId);
+                out.writeLong(friendId);
+            });
+            applyFriends(type, userId, friendId);
+            return null;
+        });
+    }
+
+    private void applyFriends(byte type, long userId, long friendId) {
+        User changed = users.computeIfPresent(userId, (id, current) -> {
+            SortedLongSet friends = new SortedLongSet(current.getFriends());
+            boolean modified = type == FRIEND_ADDED ? friends.add(friendId) : friends.remove(friendId);
+            return modified ? withFriends(current, friends) : current;
+        });
+        if (changed == null) {
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
+        version.incrementAndGet();
+    }
+
+    private static User withFriends(User source, SortedLongSet friends) {
+        User user = new User();
+        user.setId(source.getId());
+        user.setEmail(source.getEmail());
+        user.setLogin(source.getLogin());
+        user.setName(source.getName());
+        user.setBirthday(source.getBirthday());
+        user.setFriends(friends);
+        return user;
+    }
+
+    private void requireUser(long id) {
+        if (!users.containsKey(id)) {
+            throw new NotFoundException("Пользователь с id=" + id + " не найден");
+        }
+    }
+
+    private <T> T durably(Supplier<T> mutation) {
+        return writeAheadLog == null ? mutation.get() : writeAheadLog.write(mutation);
+    }
+
+    private void appendToLog(byte type, WriteAheadLog.RecordWriter payload) {
+        if (writeAheadLog != null) {
+            writeAheadLog.append(out -> {
+                out.writeByte(type);
+                payload.writeTo(out);
+            });
+        }
+    }
+
+    private static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        WriteAheadLog.writeString(out, user.getEmail());
+        WriteAheadLog.writeString(out, user.getLogin());
+        WriteAheadLog.writeString(out, user.getName());
+        WriteAheadLog.writeDate(out, user.getBirthday());
+        long[] friends = user.getFriends().toLongArray();
+        out.writeInt(friends.length);
+        for (long friendId : friends) {
+            out.writeLong(friendId);
+        }
+    }
+
+    private static User readUser(ByteBuffer in) {
+        User user = new User();
+        user.setId(in.getLong());
+        user.setEmail(WriteAheadLog.readString(in));
+        user.setLogin(WriteAheadLog.readString(in));
+        user.setName(WriteAheadLog.readString(in));
+        user.setBirthday(WriteAheadLog.readDate(in));
+        int count = in.getInt();
+        SortedLongSet friends = new SortedLongSet();
+        for (int i = 0; i < count; i++) {
+            friends.add(in.getLong());
+        }
+        user.setFriends(friends);
+        return user;
+    }
+
+    /**
+     * Снимок — следующий id и все пользователи с друзьями; записи журнала применяются без повторной записи.
+     */
+    private class Recovery implements WriteAheadLog.Target {
+
+        @Override
+        public void loadSnapshot(ByteBuffer in) {
+            nextId.set(in.getLong());
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                applySave(readUser(in));
+            }
+        }
+
+        @Override
+        public void replay(ByteBuffer record) {
+            byte type = record.get();
+            switch (type) {
+                case SAVED -> {
+                    User user = readUser(record);
+                    applySave(user);
+                    nextId.accumulateAndGet(user.getId() + 1, Math::max);
+                }
+                case UPDATED -> {
+                    User user = readUser(record);
+                    if (users.containsKey(user.getId())) {
+                        applyUpdate(user);
+                    }
+                }
+                case DELETED -> {
+                    long id = record.getLong();
+                    if (users.containsKey(id)) {
+                        applyDelete(id);
+                    }
+                }
+                case FRIEND_ADDED, FRIEND_REMOVED -> {
+                    long userId = record.getLong();
+                    long friendId = record.getLong();
+                    if (users.containsKey(userId)) {
+                        applyFriends(type, userId, friendId);
+                    }
+                }
+                default -> throw new IllegalStateException("Неизвестная запись журнала пользователей: " + type);
+            }
+        }
+
+        @Override
+        public WriteAheadLog.SnapshotWriter captureSnapshot() {
+            long next = nextId.get();
+            List<User> captured = List.copyOf(users.values());
+            return out -> {
+                out.writeLong(next);
+                out.writeInt(captured.size());
+                for (User user : captured) {
+                    writeUser(out, user);
+                }
+            };
+        }
     }
 
     @Override
@@ -82,11 +376,18 @@ public class InMemoryUserStorage implements UserStorage {
 
     @Override
     public List<User> getCommonFriends(Long userId, Long otherId) {
-        List<User> friends1 = getFriends(userId);
-        List<User> friends2 = getFriends(otherId);
-        return friends1.stream()
-                .filter(friends2::contains)
-                .collect(Collectors.toList());
+        SortedLongSet friends1 = findById(userId).getFriends();
+        SortedLongSet friends2 = findById(otherId).getFriends();
+        SortedLongSet smaller = friends1.size() <= friends2.size() ? friends1 : friends2;
+        SortedLongSet larger = smaller == friends1 ? friends2 : friends1;
+
+        List<User> common = new ArrayList<>();
+        for (long friendId : smaller.toLongArray()) {
+            if (larger.contains(friendId)) {
+                common.add(findById(friendId));
+            }
+        }
+        return common;
     }
 
     private void validateUser(User user) {
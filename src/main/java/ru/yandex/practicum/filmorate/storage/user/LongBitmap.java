@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемое разреженное битовое множество идентификаторов.
+ * Хранит только непустые 64-битные блоки: отсортированные номера блоков и слова с битами.
+ * Пересечение — слияние по номерам блоков и побитовое AND слов.
+ */
+final class LongBitmap {
+
+    static final LongBitmap EMPTY = new LongBitmap(new long[0], new long[0], 0);
+
+    private final long[] keys;
+    private final long[] words;
+    private final int cardinality;
+
+    private LongBitmap(long[] keys, long[] words, int cardinality) {
+        this.keys = keys;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    static LongBitmap of(long[] sortedIds) {
+        long[] keys = new long[sortedIds.length];
+        long[] words = new long[sortedIds.length];
+        int blocks = 0;
+        int cardinality = 0;
+        for (long id : sortedIds) {
+            long key = id >>> 6;
+            if (blocks == 0 || keys[blocks - 1] != key) {
+                keys[blocks++] = key;
+            }
+            long bit = 1L << id;
+            if ((words[blocks - 1] & bit) == 0) {
+                words[blocks - 1] |= bit;
+                cardinality++;
+            }
+        }
+        return new LongBitmap(Arrays.copyOf(keys, blocks), Arrays.copyOf(words, blocks), cardinality);
+    }
+
+    LongBitmap with(long id) {
+        long key = id >>> 6;
+        long bit = 1L << id;
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            if ((words[index] & bit) != 0) {
+                return this;
+            }
+            long[] newWords = words.clone();
+            newWords[index] |= bit;
+            return new LongBitmap(keys, newWords, cardinality + 1);
+        }
+
+        int insertAt = -index - 1;
+        long[] newKeys = new long[keys.length + 1];
+        long[] newWords = new long[words.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insertAt);
+        System.arraycopy(words, 0, newWords, 0, insertAt);
+        newKeys[insertAt] = key;
+        newWords[insertAt] = bit;
+        System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+        System.arraycopy(words, insertAt, newWords, insertAt + 1, words.length - insertAt);
+        return new LongBitmap(newKeys, newWords, cardinality + 1);
+    }
+
+    LongBitmap without(long id) {
+        int index = Arrays.binarySearch(keys, id >>> 6);
+        long bit = 1L << id;
+        if (index < 0 || (words[index] & bit) == 0) {
+            return this;
+        }
+        long word = words[index] & ~bit;
+        if (word != 0) {
+            long[] newWords = words.clone();
+            newWords[index] = word;
+            return new LongBitmap(keys, newWords, cardinality - 1);
+        }
+
+        long[] newKeys = new long[keys.length - 1];
+        long[] newWords = new long[words.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(words, 0, newWords, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(words, index + 1, newWords, index, words.length - index - 1);
+        return new LongBitmap(newKeys, newWords, cardinality - 1);
+    }
+
+    boolean contains(long id) {
+        int index = Arrays.binarySearch(keys, id >>> 6);
+        return index >= 0 && (words[index] & (1L << id)) != 0;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    long[] and(LongBitmap other) {
+        long[] result = new long[Math.min(cardinality, other.cardinality)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                long word = words[i] & other.words[j];
+                long base = keys[i] << 6;
+                while (word != 0) {
+                    result[size++] = base + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    long[] toArray() {
+        long[] result = new long[cardinality];
+        int size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            long word = words[i];
+            long base = keys[i] << 6;
+            while (word != 0) {
+                result[size++] = base + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+}
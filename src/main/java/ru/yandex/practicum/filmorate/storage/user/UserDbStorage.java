@@ -1,27 +1,75 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.SortedLongSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EdgeLocks;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.WriteBehindJournal;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
 
+    private static final String MERGE_FRIEND_SQL =
+            "MERGE INTO friendship (user_id, friend_id) KEY(user_id, friend_id) VALUES (?, ?)";
+    private static final String MERGE_FRIEND_IF_USERS_EXIST_SQL = """
+            MERGE INTO friendship (user_id, friend_id) KEY(user_id, friend_id)
+            SELECT u.id, f.id FROM users u, users f
+            WHERE u.id = ? AND f.id = ?
+            """;
+    private static final String DELETE_FRIEND_SQL = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
+
     private final JdbcTemplate jdbcTemplate;
+    private final WriteBehindJournal journal;
+    private final FriendshipIndex friendshipIndex = new FriendshipIndex();
+    private final FriendGraph friendGraph = new FriendGraph();
+    private final EdgeLocks friendLocks = new EdgeLocks(256);
+    private final List<LongConsumer> deleteListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        rebuildFriendshipIndex();
+        journal.register(JournalRecord.Type.FRIEND_ADDED,
+                records -> applyFriendships(MERGE_FRIEND_IF_USERS_EXIST_SQL, records, true));
+        journal.register(JournalRecord.Type.FRIEND_REMOVED,
+                records -> applyFriendships(DELETE_FRIEND_SQL, records, false));
+    }
+
+    private void rebuildFriendshipIndex() {
+        Map<Long, SortedLongSet> friends = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friendship", rs -> {
+            friends.computeIfAbsent(rs.getLong("user_id"), k -> new SortedLongSet()).add(rs.getLong("friend_id"));
+        });
+        Map<Long, long[]> sortedFriendIds = new HashMap<>();
+        friends.forEach((userId, ids) -> sortedFriendIds.put(userId, ids.toLongArray()));
+        friendshipIndex.rebuild(sortedFriendIds);
+        friendGraph.rebuild(sortedFriendIds);
+        log.info("Индекс дружбы построен: {} пользователей с друзьями", sortedFriendIds.size());
+    }
 
     @Override
     public List<User> findAll() {
@@ -31,6 +79,14 @@ public class UserDbStorage implements UserStorage {
         return users;
     }
 
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        List<User> users = jdbcTemplate.query(sql, this::mapRowToUser, afterId == null ? 0 : afterId, limit);
+        loadAllFriends(users);
+        return users;
+    }
+
     @Override
     public User findById(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -43,6 +99,50 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Scheduled(fixedDelayString = "${filmorate.friends.compact-interval-ms:5000}")
+    public void compactFriendGraph() {
+        int pending = friendGraph.pendingChanges();
+        if (pending > 0) {
+            friendGraph.compact();
+            log.debug("Граф дружбы пересобран, применено изменений: {}", pending);
+        }
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        long[] ids = friendGraph.suggestions(userId, count);
+        Map<Long, User> byId = new HashMap<>();
+        for (User user : findAllByIds(ids)) {
+            byId.put(user.getId(), user);
+        }
+        List<User> users = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = byId.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)", Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        if (distinct.isEmpty()) {
+            return true;
+        }
+        String placeholders = String.join(",", Collections.nCopies(distinct.size(), "?"));
+        Integer found = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE id IN (" + placeholders + ")", Integer.class, distinct.toArray());
+        return found != null && found == distinct.size();
+    }
+
     @Override
     public User save(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
@@ -62,17 +162,63 @@ public class UserDbStorage implements UserStorage {
         }, keyHolder);
 
         user.setId(keyHolder.getKey().longValue());
+        version.incrementAndGet();
         return user;
     }
 
+    @Override
+    public List<User> saveAll(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        if (user.getName() == null || user.getName().isBlank()) {
+                            user.setName(user.getLogin());
+                        }
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).get("ID")).longValue());
+        }
+        version.incrementAndGet();
+        log.info("Пакетно сохранено пользователей: {}", users.size());
+        return users;
+    }
+
     @Override
     public List<User> getCommonFriends(Long userId, Long otherId) {
-        String sql = """
-                SELECT u.* FROM users u
-                INNER JOIN friendship f1 ON u.id = f1.friend_id AND f1.user_id = ?
-                INNER JOIN friendship f2 ON u.id = f2.friend_id AND f2.user_id = ?
-                """;
-        return jdbcTemplate.query(sql, this::mapRowToUser, userId, otherId);
+        return findAllByIds(friendshipIndex.commonFriends(userId, otherId));
+    }
+
+    private List<User> findAllByIds(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+        String sql = "SELECT * FROM users WHERE id IN (" + placeholders + ") ORDER BY id";
+        return jdbcTemplate.query(sql, ps -> {
+            for (int i = 0; i < ids.length; i++) {
+                ps.setLong(i + 1, ids[i]);
+            }
+        }, this::mapRowToUser);
     }
 
     @Override
@@ -89,24 +235,93 @@ public class UserDbStorage implements UserStorage {
         if (updated == 0) {
             throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
         }
+        version.incrementAndGet();
         return user;
     }
 
     @Override
     public void deleteById(Long id) {
-        jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+        deleteListeners.forEach(listener -> listener.accept(id));
+        // Дружба удаляется каскадом, поэтому ни одна связь не должна попасть в граф между DELETE и removeUser
+        friendLocks.withAll(() -> {
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+            friendshipIndex.removeUser(id);
+            friendGraph.removeUser(id);
+            return null;
+        });
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void addDeleteListener(LongConsumer listener) {
+        deleteListeners.add(listener);
+    }
+
+    @Override
+    public long version() {
+        return version.get();
     }
 
     @Override
     public void addFriend(Long userId, Long friendId) {
-        String sql = "MERGE INTO friendship (user_id, friend_id) KEY(user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+        if (journal.isEnabled()) {
+            journal.append(JournalRecord.friendAdded(userId, friendId));
+            return;
+        }
+        friendLocks.withEdge(userId, friendId, () -> {
+            jdbcTemplate.update(MERGE_FRIEND_SQL, userId, friendId);
+            friendshipIndex.add(userId, friendId);
+            friendGraph.add(userId, friendId);
+            return null;
+        });
+        version.incrementAndGet();
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
-        String sql = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        if (journal.isEnabled()) {
+            journal.append(JournalRecord.friendRemoved(userId, friendId));
+            return;
+        }
+        friendLocks.withEdge(userId, friendId, () -> {
+            jdbcTemplate.update(DELETE_FRIEND_SQL, userId, friendId);
+            friendshipIndex.remove(userId, friendId);
+            friendGraph.remove(userId, friendId);
+            return null;
+        });
+        version.incrementAndGet();
+    }
+
+    @Override
+    public int[] addFriends(long[] userIds, long[] friendIds) {
+        List<JournalRecord> records = new ArrayList<>(userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            records.add(JournalRecord.friendAdded(userIds[i], friendIds[i]));
+        }
+        return applyFriendships(MERGE_FRIEND_IF_USERS_EXIST_SQL, records, true);
+    }
+
+    private int[] applyFriendships(String sql, List<JournalRecord> records, boolean added) {
+        long[] userIds = records.stream().mapToLong(JournalRecord::first).toArray();
+        long[] friendIds = records.stream().mapToLong(JournalRecord::second).toArray();
+        List<Object[]> batch = records.stream()
+                .map(r -> new Object[]{r.first(), r.second()})
+                .collect(java.util.stream.Collectors.toList());
+        int[] updated = friendLocks.withEdges(userIds, friendIds, () -> {
+            int[] rows = jdbcTemplate.batchUpdate(sql, batch);
+            for (int i = 0; i < rows.length; i++) {
+                if (added && rows[i] > 0) {
+                    friendshipIndex.add(userIds[i], friendIds[i]);
+                    friendGraph.add(userIds[i], friendIds[i]);
+                } else if (!added) {
+                    friendshipIndex.remove(userIds[i], friendIds[i]);
+                    friendGraph.remove(userIds[i], friendIds[i]);
+                }
+            }
+            return rows;
+        });
+        version.incrementAndGet();
+        return updated;
     }
 
     @Override
@@ -123,24 +338,20 @@ public class UserDbStorage implements UserStorage {
 
         String sql = String.format("SELECT user_id, friend_id FROM friendship WHERE user_id IN (%s)", placeholders);
 
-        Map<Long, Set<Long>> friendsMap = new HashMap<>();
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, userIds.toArray());
-
-        for (Map<String, Object> row : results) {
-            Long userId = ((Number) row.get("user_id")).longValue();
-            Long friendId = ((Number) row.get("friend_id")).longValue();
-            friendsMap.computeIfAbsent(userId, k -> new HashSet<>()).add(friendId);
-        }
+        Map<Long, SortedLongSet> friendsMap = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            friendsMap.computeIfAbsent(rs.getLong("user_id"), k -> new SortedLongSet()).add(rs.getLong("friend_id"));
+        }, userIds.toArray());
 
         for (User user : users) {
-            user.setFriends(friendsMap.getOrDefault(user.getId(), new HashSet<>()));
+            user.setFriends(friendsMap.getOrDefault(user.getId(), new SortedLongSet()));
         }
     }
 
     private void loadFriends(User user) {
         String sql = "SELECT friend_id FROM friendship WHERE user_id = ?";
         List<Long> friends = jdbcTemplate.queryForList(sql, Long.class, user.getId());
-        user.setFriends(new HashSet<>(friends));
+        user.setFriends(new SortedLongSet(friends));
     }
 
     private User mapRowToUser(ResultSet rs, int rowNum) throws SQLException {
@@ -2,24 +2,59 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 public interface UserStorage {
     List<User> findAll();
 
+    List<User> findPage(Long afterId, int limit);
+
     User findById(Long id);
 
+    boolean exists(Long id);
+
+    boolean existsAll(Collection<Long> ids);
+
     User save(User user);
 
+    /**
+     * Сохраняет пользователей одной пачкой и проставляет им id. Валидация — на стороне вызывающего.
+     */
+    List<User> saveAll(List<User> users);
+
     User update(User user);
 
     void deleteById(Long id);
 
+    /**
+     * Подписывает на удаление пользователей: слушатель получает id пользователя до удаления,
+     * пока связи пользователя ещё на месте.
+     */
+    void addDeleteListener(LongConsumer listener);
+
     void addFriend(Long userId, Long friendId);
 
     void removeFriend(Long userId, Long friendId);
 
+    /**
+     * Пакетно добавляет дружбу: {@code userIds[i]} дружит с {@code friendIds[i]}.
+     * Возвращает для каждой пары 0, если одного из пользователей нет.
+     */
+    int[] addFriends(long[] userIds, long[] friendIds);
+
     List<User> getFriends(Long userId);
 
     List<User> getCommonFriends(Long userId, Long otherId);
+
+    /**
+     * Друзья друзей пользователя, которые ещё не у него в друзьях, по убыванию числа общих друзей.
+     */
+    List<User> getFriendSuggestions(Long userId, int count);
+
+    /**
+     * Номер версии данных хранилища: монотонно растёт после каждого изменения, которое видно при чтении.
+     */
+    long version();
 }
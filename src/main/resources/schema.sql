@@ -22,7 +22,16 @@ CREATE TABLE IF NOT EXISTS films (
     description VARCHAR(200),
     release_date DATE NOT NULL,
     duration INTEGER NOT NULL,
-    mpa_id INTEGER REFERENCES mpa(id)
+    mpa_id INTEGER REFERENCES mpa(id),
+    like_count BIGINT NOT NULL DEFAULT 0
+);
+
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count BIGINT NOT NULL DEFAULT 0;
+
+-- Отметка чистой остановки: clean = TRUE, только если все приращения like_count сброшены
+CREATE TABLE IF NOT EXISTS like_count_state (
+    id INTEGER PRIMARY KEY,
+    clean BOOLEAN NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS film_genres (
@@ -41,4 +50,10 @@ CREATE TABLE IF NOT EXISTS friendship (
     user_id BIGINT REFERENCES users(id) ON DELETE CASCADE,
     friend_id BIGINT REFERENCES users(id) ON DELETE CASCADE,
     PRIMARY KEY (user_id, friend_id)
-);
\ No newline at end of file
+);
+
+-- H2 сам индексирует внешние ключи одной колонкой; составные индексы покрывают обратные выборки
+-- (лайки пользователя, у кого он в друзьях, фильмы жанра) и отдают их упорядоченными
+CREATE INDEX IF NOT EXISTS idx_likes_user_film ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_friendship_friend_user ON friendship (friend_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_film ON film_genres (genre_id, film_id);
@@ -7,16 +7,18 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.test.context.ContextConfiguration;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.journal.WriteBehindJournal;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@ContextConfiguration(classes = {UserDbStorage.class})
+@ContextConfiguration(classes = {UserDbStorage.class, WriteBehindJournal.class})
 public class FilmorateApplicationTests {
 
     private final UserDbStorage userStorage;
@@ -91,4 +93,18 @@ public class FilmorateApplicationTests {
         assertThat(friends).hasSize(1);
         assertThat(friends.get(0).getId()).isEqualTo(createdUser2.getId());
     }
+
+    @Test
+    public void testExistsAll() {
+        User user = new User();
+        user.setEmail("test@mail.com");
+        user.setLogin("testlogin");
+        user.setName("Test Name");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User createdUser = userStorage.save(user);
+
+        assertThat(userStorage.exists(createdUser.getId())).isTrue();
+        assertThat(userStorage.existsAll(List.of(createdUser.getId(), createdUser.getId()))).isTrue();
+        assertThat(userStorage.existsAll(List.of(createdUser.getId(), -1L))).isFalse();
+    }
 }
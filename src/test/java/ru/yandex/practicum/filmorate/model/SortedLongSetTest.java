@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SortedLongSetTest {
+
+    @Test
+    public void duplicatesAreIgnored() {
+        SortedLongSet set = new SortedLongSet();
+
+        assertThat(set.add(5L)).isTrue();
+        assertThat(set.add(5L)).isFalse();
+        assertThat(set.add(Long.valueOf(5))).isFalse();
+
+        assertThat(set).hasSize(1).containsExactly(5L);
+    }
+
+    @Test
+    public void iteratesInAscendingOrderWhateverTheInsertionOrder() {
+        SortedLongSet set = new SortedLongSet(List.of(42L, -7L, 3L, Long.MAX_VALUE, 3L, 0L, Long.MIN_VALUE));
+
+        assertThat(set).containsExactly(Long.MIN_VALUE, -7L, 0L, 3L, 42L, Long.MAX_VALUE);
+        assertThat(set.toLongArray()).containsExactly(Long.MIN_VALUE, -7L, 0L, 3L, 42L, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void containsAndRemoveAcceptOnlyLongs() {
+        SortedLongSet set = new SortedLongSet(List.of(1L, 2L, 3L));
+
+        assertThat(set.contains(2L)).isTrue();
+        assertThat(set.contains(Integer.valueOf(2))).isFalse();
+        assertThat(set.contains("2")).isFalse();
+        assertThat(set.remove(Integer.valueOf(2))).isFalse();
+        assertThat(set.remove(4L)).isFalse();
+        assertThat(set.remove(Long.valueOf(2))).isTrue();
+
+        assertThat(set).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void iteratorRemovesTheLastReturnedElement() {
+        SortedLongSet set = new SortedLongSet(List.of(1L, 2L, 3L, 4L, 5L));
+
+        Iterator<Long> it = set.iterator();
+        assertThatThrownBy(it::remove).isInstanceOf(IllegalStateException.class);
+        while (it.hasNext()) {
+            if (it.next() % 2 == 0) {
+                it.remove();
+            }
+        }
+
+        assertThat(set).containsExactly(1L, 3L, 5L);
+        assertThatThrownBy(it::next).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    public void equalsAnyOtherSetWithTheSameElements() {
+        SortedLongSet set = new SortedLongSet(List.of(3L, 1L, 2L));
+
+        assertThat(set).isEqualTo(Set.of(1L, 2L, 3L));
+        assertThat(Set.of(1L, 2L, 3L)).isEqualTo(set);
+        assertThat(set.hashCode()).isEqualTo(Set.of(1L, 2L, 3L).hashCode());
+    }
+
+    @Test
+    public void copyIsIndependentOfTheSource() {
+        SortedLongSet source = new SortedLongSet(List.of(1L, 2L, 3L));
+        source.remove(3L);
+
+        SortedLongSet copy = new SortedLongSet(source);
+        copy.add(4L);
+        source.add(0L);
+
+        assertThat(copy).containsExactly(1L, 2L, 4L);
+        assertThat(source).containsExactly(0L, 1L, 2L);
+        assertThat(new SortedLongSet(new SortedLongSet())).isEmpty();
+    }
+
+    @Test
+    public void clearAndTrimKeepTheSetUsable() {
+        SortedLongSet set = new SortedLongSet(List.of(1L, 2L, 3L));
+        set.remove(2L);
+        set.trimToSize();
+        assertThat(set).containsExactly(1L, 3L);
+
+        set.clear();
+        set.trimToSize();
+        assertThat(set).isEmpty();
+        set.add(7L);
+        assertThat(set).containsExactly(7L);
+    }
+
+    @Test
+    public void behavesLikeTreeSetUnderRandomOperations() {
+        Random random = new Random(7);
+        SortedLongSet set = new SortedLongSet();
+        TreeSet<Long> expected = new TreeSet<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(500) - 250;
+            if (random.nextInt(3) == 0) {
+                assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+            } else {
+                assertThat(set.add(value)).isEqualTo(expected.add(value));
+            }
+        }
+
+        assertThat(set).containsExactlyElementsOf(expected);
+        assertThat(new HashSet<>(set)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,262 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryStorageConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int OPERATIONS_PER_THREAD = 500;
+    private static final Comparator<Film> BY_ID = Comparator.comparing(Film::getId);
+    private static final Comparator<Film> BY_LIKES_DESC =
+            Comparator.comparing((Film film) -> film.getLikes().size()).reversed();
+
+    @Test
+    public void concurrentSavesGetUniqueIds() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+
+        List<List<Long>> ids = runConcurrently(thread -> () -> {
+            List<Long> saved = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                saved.add(storage.save(film("Фильм " + thread + "-" + i)).getId());
+            }
+            return saved;
+        });
+
+        Set<Long> unique = ids.stream().flatMap(List::stream).collect(Collectors.toSet());
+        assertThat(unique).hasSize(THREADS * OPERATIONS_PER_THREAD);
+        assertThat(storage.findAll()).hasSize(THREADS * OPERATIONS_PER_THREAD);
+        assertThat(unique).containsExactlyInAnyOrderElementsOf(
+                LongStream.rangeClosed(1, THREADS * OPERATIONS_PER_THREAD).boxed().toList());
+    }
+
+    @Test
+    public void concurrentLikesOnOneFilmAreNotLost() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Long filmId = storage.save(film("Хит")).getId();
+
+        runConcurrently(thread -> () -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                storage.addLike(filmId, (long) thread * OPERATIONS_PER_THREAD + i);
+            }
+            return null;
+        });
+
+        assertThat(storage.findById(filmId).getLikes()).hasSize(THREADS * OPERATIONS_PER_THREAD);
+    }
+
+    @Test
+    public void concurrentAddAndRemoveLikesMatchSequentialResult() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Long filmId = storage.save(film("Хит")).getId();
+
+        // Каждый поток ставит лайки от своих пользователей и снимает каждый второй
+        runConcurrently(thread -> () -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                long userId = (long) thread * OPERATIONS_PER_THREAD + i;
+                storage.addLike(filmId, userId);
+                if (i % 2 == 0) {
+                    storage.removeLike(filmId, userId);
+                }
+            }
+            return null;
+        });
+
+        Set<Long> expected = new HashSet<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 1; i < OPERATIONS_PER_THREAD; i += 2) {
+                expected.add((long) thread * OPERATIONS_PER_THREAD + i);
+            }
+        }
+        assertThat(storage.findById(filmId).getLikes()).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    public void updateDoesNotDropConcurrentLikes() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Long filmId = storage.save(film("Хит")).getId();
+
+        runConcurrently(thread -> () -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                if (thread % 4 == 0) {
+                    Film changed = film("Хит " + i);
+                    changed.setId(filmId);
+                    storage.update(changed);
+                } else {
+                    storage.addLike(filmId, (long) thread * OPERATIONS_PER_THREAD + i);
+                }
+            }
+            return null;
+        });
+
+        int likers = THREADS - THREADS / 4;
+        assertThat(storage.findById(filmId).getLikes()).hasSize(likers * OPERATIONS_PER_THREAD);
+    }
+
+    @Test
+    public void readersSeeConsistentLikesWhileWritersChangeThem() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        for (int i = 0; i < 10; i++) {
+            storage.save(film("Фильм " + i));
+        }
+        AtomicBoolean sawTornSet = new AtomicBoolean();
+
+        runConcurrently(thread -> () -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                long filmId = 1 + (i % 10);
+                if (thread % 2 == 0) {
+                    storage.addLike(filmId, (long) thread * OPERATIONS_PER_THREAD + i);
+                    storage.removeLike(filmId, (long) thread * OPERATIONS_PER_THREAD + i);
+                } else {
+                    for (Film film : storage.getPopular(10)) {
+                        List<Long> likes = new ArrayList<>(film.getLikes());
+                        if (likes.size() != film.getLikes().size()
+                                || likes.stream().distinct().count() != likes.size()) {
+                            sawTornSet.set(true);
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+
+        assertThat(sawTornSet).isFalse();
+        assertThat(storage.findAll()).allSatisfy(film -> assertThat(film.getLikes()).isEmpty());
+    }
+
+    @Test
+    public void snapshotReadersSeeSortedListsWhileWritersChangeLikes() throws Exception {
+        try (InMemoryFilmStorage storage = new InMemoryFilmStorage(InMemoryStorageOptions.defaults().readOptimized(Duration.ofMillis(1)))) {
+            for (int i = 0; i < 10; i++) {
+                storage.save(film("Фильм " + i));
+            }
+            storage.publishSnapshot();
+            AtomicBoolean sawUnsorted = new AtomicBoolean();
+
+            runConcurrently(thread -> () -> {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    long filmId = 1 + (i % 10);
+                    if (thread % 2 == 0) {
+                        storage.addLike(filmId, (long) thread * OPERATIONS_PER_THREAD + i);
+                    } else {
+                        List<Film> popular = storage.getPopular(10);
+                        List<Film> all = storage.findAll();
+                        if (popular.size() != 10 || !isSorted(popular, BY_LIKES_DESC) || !isSorted(all, BY_ID)) {
+                            sawUnsorted.set(true);
+                        }
+                    }
+                }
+                return null;
+            });
+
+            assertThat(sawUnsorted).isFalse();
+            storage.publishSnapshot();
+            assertThat(storage.findAll()).extracting(Film::getId)
+                    .containsExactlyElementsOf(LongStream.rangeClosed(1, 10).boxed().toList());
+            assertThat(storage.getPopular(10))
+                    .isSortedAccordingTo(BY_LIKES_DESC)
+                    .extracting(film -> film.getLikes().size())
+                    .containsOnly(THREADS / 2 * OPERATIONS_PER_THREAD / 10);
+            assertThat(storage.findPage(3L, 4)).extracting(Film::getId).containsExactly(4L, 5L, 6L, 7L);
+        }
+    }
+
+    @Test
+    public void concurrentFriendshipsAreNotLost() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        for (int i = 0; i <= THREADS; i++) {
+            storage.save(user("user" + i));
+        }
+        long hubId = 1;
+
+        // Все потоки одновременно добавляют друзей одному пользователю и себе
+        runConcurrently(thread -> () -> {
+            long userId = thread + 2;
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                storage.addFriend(hubId, userId);
+                storage.addFriend(userId, hubId);
+                if (i % 2 == 0) {
+                    storage.removeFriend(hubId, userId);
+                }
+            }
+            storage.addFriend(hubId, userId);
+            return null;
+        });
+
+        assertThat(storage.findById(hubId).getFriends()).hasSize(THREADS);
+        assertThat(storage.getCommonFriends(2L, 3L)).extracting(User::getId).containsExactly(hubId);
+    }
+
+    private static <T> List<T> runConcurrently(IntFunction<Callable<T>> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                Callable<T> body = task.apply(thread);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return body.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isSorted(List<Film> films, Comparator<Film> order) {
+        for (int i = 1; i < films.size(); i++) {
+            if (order.compare(films.get(i - 1), films.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+        return film;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
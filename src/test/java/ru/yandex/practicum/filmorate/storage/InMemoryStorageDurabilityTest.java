@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryStorageDurabilityTest {
+
+    private static final Duration RARELY = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void stateIsRecoveredFromLogWithoutClose() {
+        InMemoryFilmStorage films = new InMemoryFilmStorage(durable());
+        InMemoryUserStorage users = new InMemoryUserStorage(durable());
+        fill(films, users);
+
+        // Без close: как после падения процесса, снимка нет, всё восстанавливается из журнала
+        InMemoryFilmStorage recoveredFilms = new InMemoryFilmStorage(durable());
+        InMemoryUserStorage recoveredUsers = new InMemoryUserStorage(durable());
+
+        assertThat(byId(recoveredFilms.findAll())).isEqualTo(byId(films.findAll()));
+        assertThat(byUserId(recoveredUsers.findAll())).isEqualTo(byUserId(users.findAll()));
+        assertThat(recoveredFilms.save(film("Новый")).getId()).isEqualTo(6L);
+        assertThat(recoveredUsers.save(user("new")).getId()).isEqualTo(5L);
+    }
+
+    @Test
+    public void closeWritesSnapshotAndRecoveryReplaysOnlyTheTail() throws IOException {
+        InMemoryFilmStorage films = new InMemoryFilmStorage(durable());
+        InMemoryUserStorage users = new InMemoryUserStorage(durable());
+        fill(films, users);
+        films.close();
+        users.close();
+
+        assertThat(directory.resolve("films.snapshot")).exists();
+        assertThat(directory.resolve("users.snapshot")).exists();
+        assertThat(logBytes()).isZero();
+
+        InMemoryFilmStorage reopened = new InMemoryFilmStorage(durable());
+        reopened.addLike(2L, 4L);
+        reopened.removeLike(1L, 1L);
+        Film renamed = film("Переименован");
+        renamed.setId(1L);
+        reopened.update(renamed);
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(durable());
+        assertThat(byId(recovered.findAll())).isEqualTo(byId(reopened.findAll()));
+        assertThat(recovered.findById(1L).getName()).isEqualTo("Переименован");
+        assertThat(recovered.findById(2L).getLikes()).contains(4L);
+    }
+
+    @Test
+    public void tornRecordAtTheEndOfLogIsDiscarded() throws IOException {
+        InMemoryFilmStorage films = new InMemoryFilmStorage(durable());
+        InMemoryUserStorage users = new InMemoryUserStorage(durable());
+        fill(films, users);
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(file -> file.getFileName().toString().startsWith("films-"))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow();
+        }
+        // Длина записи есть, самой записи нет — так выглядит запись, оборванная на середине
+        Files.write(lastSegment, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(durable());
+
+        assertThat(byId(recovered.findAll())).isEqualTo(byId(films.findAll()));
+    }
+
+    @Test
+    public void durableStorageServesListsFromRecoveredSnapshot() {
+        InMemoryFilmStorage films = new InMemoryFilmStorage(durable());
+        fill(films, new InMemoryUserStorage(durable()));
+
+        try (InMemoryFilmStorage recovered = new InMemoryFilmStorage(durable().readOptimized(RARELY))) {
+            assertThat(recovered.findAll()).isEqualTo(byId(films.findAll()));
+            assertThat(recovered.getPopular(3)).isEqualTo(films.getPopular(3));
+
+            recovered.save(film("Новый"));
+            recovered.publishSnapshot();
+            assertThat(recovered.findAll()).hasSize(5);
+        }
+        assertThat(new InMemoryFilmStorage(durable()).findAll()).hasSize(5);
+    }
+
+    private InMemoryStorageOptions durable() {
+        return InMemoryStorageOptions.defaults().durable(directory, RARELY);
+    }
+
+    private static void fill(InMemoryFilmStorage films, InMemoryUserStorage users) {
+        for (int i = 1; i <= 4; i++) {
+            users.save(user("user" + i));
+        }
+        users.addFriend(1L, 2L);
+        users.addFriend(1L, 3L);
+        users.addFriend(2L, 3L);
+        users.removeFriend(1L, 3L);
+        User renamed = user("user2");
+        renamed.setId(2L);
+        renamed.setName("Второй");
+        users.update(renamed);
+        users.deleteById(4L);
+
+        for (int i = 1; i <= 5; i++) {
+            films.save(film("Фильм " + i));
+        }
+        films.addLike(1L, 1L);
+        films.addLike(1L, 2L);
+        films.addLike(2L, 3L);
+        films.removeLike(1L, 2L);
+        films.addLikes(new long[]{3, 3, 9}, new long[]{1, 2, 1});
+        Film changed = film("Фильм 2, режиссёрская версия");
+        changed.setId(2L);
+        films.update(changed);
+        films.deleteById(5L);
+    }
+
+    private long logBytes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long total = 0;
+            for (Path file : files.filter(file -> file.toString().endsWith(".log")).toList()) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+
+    private static List<Film> byId(List<Film> films) {
+        return films.stream().sorted(Comparator.comparing(Film::getId)).toList();
+    }
+
+    private static List<User> byUserId(List<User> users) {
+        return users.stream().sorted(Comparator.comparing(User::getId)).toList();
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+        film.setMpaId(3);
+        film.setGenreIds(Set.of(1, 4));
+        return film;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.journal.WriteBehindJournal;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Планы всех SQL-запросов {@link FilmDbStorage} и {@link UserDbStorage}. Запросы записываются, пока на заполненной
+ * H2 вызываются все методы хранилищ, затем для каждого выполняется EXPLAIN. Полный просмотр таблицы допускается
+ * только для запросов из {@link #FULL_SCAN_ALLOWED}, которым по смыслу нужна вся таблица.
+ */
+public class SqlPlanTest {
+
+    private static final int USERS = 300;
+    private static final int FILMS = 1100;
+
+    private static final Map<String, String> FULL_SCAN_ALLOWED = Map.of(
+            "SELECT * FROM users", "GET /users без пагинации",
+            "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, g.genre_id FROM films f "
+                    + "LEFT JOIN film_genres g ON f.id = g.film_id", "GET /films без пагинации",
+            "SELECT film_id, genre_id FROM film_genres", "рейтинг популярности при старте",
+            "SELECT id, like_count, mpa_id, release_date FROM films", "рейтинг популярности при старте",
+            "SELECT user_id, friend_id FROM friendship", "индекс дружбы при старте",
+            "SELECT id, name, description FROM films", "поисковый индекс при старте");
+
+    private static final Set<String> statements = Collections.synchronizedSet(new LinkedHashSet<>());
+    private static DataSource dataSource;
+
+    @BeforeAll
+    public static void runAllStorageMethods() {
+        DriverManagerDataSource h2 = new DriverManagerDataSource("jdbc:h2:mem:sql-plan;DB_CLOSE_DELAY=-1",
+                "sa", "password");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(h2);
+        dataSource = h2;
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(recording(h2));
+        WriteBehindJournal journal = new WriteBehindJournal(false, Path.of("sql-plan.journal"));
+        UserDbStorage userStorage = new UserDbStorage(jdbcTemplate, journal);
+        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate, journal);
+        userStorage.init();
+        filmStorage.init();
+        userStorage.addDeleteListener(filmStorage::removeLikesOf);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(user(i));
+        }
+        userStorage.saveAll(users);
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            films.add(film(i));
+        }
+        filmStorage.saveAll(films);
+        long[] likedFilms = LongStream.range(0, USERS * 5L).map(i -> 1 + i % FILMS).toArray();
+        long[] likingUsers = LongStream.range(0, USERS * 5L).map(i -> 1 + i * 7 % USERS).toArray();
+        filmStorage.addLikes(likedFilms, likingUsers);
+        long[] friendOwners = LongStream.range(0, USERS * 5L).map(i -> 1 + i % USERS).toArray();
+        long[] friends = LongStream.range(0, USERS * 5L).map(i -> 1 + (i * 13 + 1) % USERS).toArray();
+        userStorage.addFriends(friendOwners, friends);
+        new JdbcTemplate(h2).execute("ANALYZE");
+
+        userStorage.findAll();
+        userStorage.findPage(10L, 20);
+        userStorage.findById(1L);
+        userStorage.exists(1L);
+        userStorage.existsAll(List.of(1L, 2L, 3L));
+        User user = userStorage.save(user(USERS));
+        user.setName("Переименован");
+        userStorage.update(user);
+        userStorage.addFriend(1L, user.getId());
+        userStorage.getFriends(1L);
+        userStorage.getCommonFriends(1L, 2L);
+        userStorage.getFriendSuggestions(1L, 10);
+        userStorage.removeFriend(1L, user.getId());
+
+        filmStorage.findAll();
+        filmStorage.findPage(10L, 20);
+        filmStorage.findById(1L);
+        filmStorage.exists(1L);
+        filmStorage.existsAll(List.of(1L, 2L, 3L));
+        Film film = filmStorage.save(film(FILMS));
+        film.setName("Переименован");
+        filmStorage.update(film);
+        filmStorage.addLike(film.getId(), 1L);
+        filmStorage.addLike(film.getId(), 1L);
+        filmStorage.removeLike(film.getId(), 1L);
+        assertThatThrownBy(() -> filmStorage.removeLike(film.getId(), Long.MAX_VALUE))
+                .isInstanceOf(NotFoundException.class);
+        filmStorage.flushLikeCounts();
+        filmStorage.getPopular(10);
+        filmStorage.getPopular(10, 1, 2, null);
+        filmStorage.getRecommendations(1L, 10);
+        filmStorage.search("film", 10);
+        filmStorage.deleteById(film.getId());
+        long likes = filmStorage.likeCount(2L);
+        filmStorage.addLike(2L, user.getId());
+        userStorage.deleteById(user.getId());
+        assertThat(filmStorage.likeCount(2L)).isEqualTo(likes);
+    }
+
+    @Test
+    public void allStorageStatementsAreRecorded() {
+        assertThat(statements).hasSizeGreaterThan(30);
+    }
+
+    @TestFactory
+    public Stream<DynamicTest> noStatementFallsBackToTableScan() {
+        return new ArrayList<>(statements).stream().map(sql -> DynamicTest.dynamicTest(sql, () -> {
+            String plan = explain(sql);
+            if (!FULL_SCAN_ALLOWED.containsKey(normalize(sql))) {
+                assertThat(plan).as("План запроса:%n%s", plan).doesNotContain(".tableScan");
+            }
+        }));
+    }
+
+    private static String explain(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            var resultSet = statement.executeQuery();
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Источник соединений, который запоминает текст каждого подготовленного или выполненного запроса.
+     */
+    private static DataSource recording(DataSource target) {
+        return new DelegatingDataSource(target) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return proxy(Connection.class, connection, (method, args) -> {
+                    if (method.getName().startsWith("prepare") && args[0] instanceof String sql) {
+                        statements.add(sql);
+                    }
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement && !(result instanceof PreparedStatement)) {
+                        return proxy(Statement.class, statement, (statementMethod, statementArgs) -> {
+                            if ((statementMethod.getName().startsWith("execute")
+                                    || statementMethod.getName().equals("addBatch"))
+                                    && statementArgs != null && statementArgs[0] instanceof String sql) {
+                                statements.add(sql);
+                            }
+                            return invoke(statement, statementMethod, statementArgs);
+                        });
+                    }
+                    return result;
+                });
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, Call call) {
+        return (T) Proxy.newProxyInstance(SqlPlanTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> call.invoke(method, args));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@mail.ru");
+        user.setLogin("user" + i);
+        user.setName("Пользователь " + i);
+        user.setBirthday(LocalDate.of(1980, 1, 1).plusDays(i));
+        return user;
+    }
+
+    private static Film film(int i) {
+        Film film = new Film();
+        film.setName("Film " + i);
+        film.setDescription("Описание фильма " + i);
+        film.setReleaseDate(LocalDate.of(1990, 1, 1).plusDays(i));
+        film.setDuration(90 + i % 60);
+        film.setMpaId(1 + i % 5);
+        film.setGenreIds(Set.of(1 + i % 6));
+        return film;
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+}
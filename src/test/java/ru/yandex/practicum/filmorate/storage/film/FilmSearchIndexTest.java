@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilmSearchIndexTest {
+
+    @Test
+    public void tokenizeLowercasesFoldsYoAndSplitsOnNonLetters() {
+        assertThat(FilmSearchIndex.tokenize("Ёлки-палки, ЁЖИК в тумане!"))
+                .containsExactly("елки", "палки", "ежик", "в", "тумане");
+        assertThat(FilmSearchIndex.tokenize("Terminator 2: Judgment Day"))
+                .containsExactly("terminator", "2", "judgment", "day");
+        assertThat(FilmSearchIndex.tokenize("  ...  ")).isEmpty();
+        assertThat(FilmSearchIndex.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    public void queryTokensDropDuplicatesAndKeepTheFirstTen() {
+        String query = IntStream.rangeClosed(1, 12).mapToObj(i -> "слово" + i).collect(Collectors.joining(" "));
+
+        assertThat(FilmSearchIndex.queryTokens("кот КОТ кот пёс")).containsExactly("кот", "пес");
+        assertThat(FilmSearchIndex.queryTokens(query))
+                .hasSize(FilmSearchIndex.MAX_QUERY_TOKENS)
+                .startsWith("слово1")
+                .endsWith("слово10");
+    }
+
+    @Test
+    public void matchInNameOutranksSimilarWordInDescription() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Обычный день", "фильм про матрицу");
+        index.index(2, "Матрица", "фантастический боевик");
+        index.index(3, "Комедия", "смешно");
+
+        assertThat(index.search("матрица", 10)).containsExactly(2L, 1L);
+        assertThat(index.search("МАТРИЦА", 10)).containsExactly(2L, 1L);
+        assertThat(index.search("комедия", 10)).containsExactly(3L);
+    }
+
+    @Test
+    public void prefixFindsLongerWords() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Терминатор", "");
+        index.index(2, "Термометр", "");
+        index.index(3, "Титаник", "");
+
+        assertThat(index.search("терм", 10)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search("термин", 10)).containsExactly(1L);
+    }
+
+    @Test
+    public void exactMatchOutranksPrefixAndFuzzyMatches() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Котлета", "");
+        index.index(2, "Кот", "");
+        index.index(3, "Котт", "");
+
+        assertThat(index.search("кот", 10)).first().isEqualTo(2L);
+    }
+
+    @Test
+    public void fuzzyMatchToleratesTyposInCyrillic() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Матрица", "");
+        index.index(2, "Мастер и Маргарита", "");
+
+        assertThat(index.search("матрца", 10)).containsExactly(1L);
+        assertThat(index.search("маргарта", 10)).containsExactly(2L);
+        assertThat(index.search("совсем другое", 10)).isEmpty();
+    }
+
+    @Test
+    public void shortWordsMatchOnlyExactly() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Он", "");
+        index.index(2, "Оно", "");
+
+        assertThat(index.search("он", 10)).containsExactly(1L);
+    }
+
+    @Test
+    public void moreMatchedWordsRankHigherAndTiesGoByIdWithinLimit() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Ёжик", "");
+        index.index(2, "Ежик в тумане", "");
+        index.index(3, "Ежик", "");
+
+        assertThat(index.search("ежик туман", 10)).containsExactly(2L, 1L, 3L);
+        assertThat(index.search("ёжик", 2)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void reindexAndRemoveReplaceOldWords() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.index(1, "Старое название", "");
+        index.index(1, "Новое название", "");
+
+        assertThat(index.search("старое", 10)).isEmpty();
+        assertThat(index.search("новое", 10)).containsExactly(1L);
+
+        index.remove(1);
+        assertThat(index.search("название", 10)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.InMemoryStorageOptions;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryFilmStorageTest {
+
+    @Test
+    public void yearFilterSkipsFilmsWithoutReleaseDate() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Film undated = storage.save(film("Без даты", null));
+        Film dated = storage.save(film("С датой", LocalDate.of(1999, 3, 31)));
+        storage.addLike(undated.getId(), 1L);
+
+        assertThat(storage.getPopular(10, null, null, 1999)).extracting(Film::getId).containsExactly(dated.getId());
+        assertThat(storage.getPopular(10, null, 3, null)).extracting(Film::getId)
+                .containsExactly(undated.getId(), dated.getId());
+    }
+
+    @Test
+    public void yearFilterSkipsFilmsWithoutReleaseDateInSnapshot() {
+        try (InMemoryFilmStorage storage = new InMemoryFilmStorage(
+                InMemoryStorageOptions.defaults().readOptimized(Duration.ofHours(1)))) {
+            storage.save(film("Без даты", null));
+            Film dated = storage.save(film("С датой", LocalDate.of(1999, 3, 31)));
+            storage.publishSnapshot();
+
+            assertThat(storage.getPopular(10, null, null, 1999)).extracting(Film::getId)
+                    .containsExactly(dated.getId());
+        }
+    }
+
+    @Test
+    public void removeLikesOfDropsEveryLikeOfTheUserAndNotifiesListeners() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Film first = storage.save(film("Первый", LocalDate.of(2000, 1, 1)));
+        Film second = storage.save(film("Второй", LocalDate.of(2000, 1, 1)));
+        storage.addLike(first.getId(), 1L);
+        storage.addLike(first.getId(), 2L);
+        storage.addLike(second.getId(), 1L);
+        List<Long> changed = new ArrayList<>();
+        storage.addLikesListener(changed::add);
+
+        storage.removeLikesOf(1L);
+
+        assertThat(storage.findById(first.getId()).getLikes()).containsExactly(2L);
+        assertThat(storage.findById(second.getId()).getLikes()).isEmpty();
+        assertThat(changed).containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    public void likesFromUnknownUsersAreRejected() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(InMemoryStorageOptions.defaults(), userId -> userId == 1L);
+        Film film = storage.save(film("Фильм", LocalDate.of(2000, 1, 1)));
+
+        assertThatThrownBy(() -> storage.addLike(film.getId(), 2L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id=2");
+        assertThatThrownBy(() -> storage.removeLike(film.getId(), 2L)).isInstanceOf(NotFoundException.class);
+        assertThat(storage.addLikes(new long[]{film.getId(), film.getId(), 99}, new long[]{2, 1, 1}))
+                .containsExactly(0, 1, 0);
+        assertThat(storage.findById(film.getId()).getLikes()).containsExactly(1L);
+    }
+
+    private static Film film(String name, LocalDate releaseDate) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(releaseDate);
+        film.setDuration(100);
+        film.setMpaId(3);
+        return film;
+    }
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FriendGraphTest {
+
+    private static final int USERS = 60;
+
+    @Test
+    public void suggestionsRankByMutualFriendsThenById() {
+        FriendGraph graph = new FriendGraph();
+        graph.rebuild(Map.of(
+                1L, new long[]{2, 3},
+                2L, new long[]{4, 5},
+                3L, new long[]{4, 1}));
+
+        assertThat(graph.suggestions(1, 10)).containsExactly(4, 5);
+        assertThat(graph.suggestions(1, 1)).containsExactly(4);
+        assertThat(graph.suggestions(9, 10)).isEmpty();
+    }
+
+    @Test
+    public void suggestionsMatchBruteForceAsEditsPileUpInOverrides() {
+        Random random = new Random(17);
+        Map<Long, TreeSet<Long>> expected = randomGraph(random);
+        FriendGraph graph = new FriendGraph();
+        graph.rebuild(toRows(expected));
+
+        for (int round = 0; round < 2_000; round++) {
+            long userId = 1 + random.nextInt(USERS);
+            long friendId = 1 + random.nextInt(USERS);
+            int action = random.nextInt(10);
+            if (action < 5 && userId != friendId) {
+                graph.add(userId, friendId);
+                expected.computeIfAbsent(userId, id -> new TreeSet<>()).add(friendId);
+            } else if (action < 9) {
+                graph.remove(userId, friendId);
+                expected.getOrDefault(userId, new TreeSet<>()).remove(friendId);
+            } else {
+                graph.removeUser(userId);
+                expected.remove(userId);
+            }
+
+            if (round % 50 == 0) {
+                assertSuggestions(graph, expected);
+            }
+        }
+        assertThat(graph.pendingChanges()).isPositive();
+        assertSuggestions(graph, expected);
+    }
+
+    @Test
+    public void compactionKeepsSuggestionsIntact() {
+        Random random = new Random(23);
+        Map<Long, TreeSet<Long>> expected = randomGraph(random);
+        FriendGraph graph = new FriendGraph();
+        graph.rebuild(toRows(expected));
+
+        for (int round = 0; round < 500; round++) {
+            long userId = 1 + random.nextInt(USERS);
+            long friendId = 1 + random.nextInt(USERS);
+            if (random.nextBoolean() && userId != friendId) {
+                graph.add(userId, friendId);
+                expected.computeIfAbsent(userId, id -> new TreeSet<>()).add(friendId);
+            } else {
+                graph.remove(userId, friendId);
+                expected.getOrDefault(userId, new TreeSet<>()).remove(friendId);
+            }
+            if (round % 100 == 99) {
+                graph.compact();
+                assertThat(graph.pendingChanges()).isZero();
+                assertSuggestions(graph, expected);
+            }
+        }
+    }
+
+    private static void assertSuggestions(FriendGraph graph, Map<Long, TreeSet<Long>> expected) {
+        for (long userId = 1; userId <= USERS; userId++) {
+            assertThat(graph.friendsOf(userId))
+                    .containsExactly(expected.getOrDefault(userId, new TreeSet<>()).stream()
+                            .mapToLong(Long::longValue).toArray());
+            assertThat(graph.suggestions(userId, 5))
+                    .as("suggestions for %d", userId)
+                    .containsExactly(bruteForceSuggestions(expected, userId, 5));
+        }
+    }
+
+    private static long[] bruteForceSuggestions(Map<Long, TreeSet<Long>> graph, long userId, int count) {
+        TreeSet<Long> friends = graph.getOrDefault(userId, new TreeSet<>());
+        Map<Long, Integer> mutual = new HashMap<>();
+        for (long friendId : friends) {
+            for (long candidate : graph.getOrDefault(friendId, new TreeSet<>())) {
+                if (candidate != userId && !friends.contains(candidate)) {
+                    mutual.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        return mutual.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())))
+                .limit(count)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static Map<Long, TreeSet<Long>> randomGraph(Random random) {
+        Map<Long, TreeSet<Long>> graph = new TreeMap<>();
+        for (long userId = 1; userId <= USERS; userId++) {
+            for (int i = 0; i < 4; i++) {
+                long friendId = 1 + random.nextInt(USERS);
+                if (friendId != userId) {
+                    graph.computeIfAbsent(userId, id -> new TreeSet<>()).add(friendId);
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static Map<Long, long[]> toRows(Map<Long, TreeSet<Long>> graph) {
+        Map<Long, long[]> rows = new HashMap<>();
+        graph.forEach((userId, friends) -> rows.put(userId, friends.stream().mapToLong(Long::longValue).toArray()));
+        return rows;
+    }
+}
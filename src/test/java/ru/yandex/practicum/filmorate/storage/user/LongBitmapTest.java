@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongBitmapTest {
+
+    @Test
+    public void iteratesAcrossWordBoundariesInAscendingOrder() {
+        long[] ids = {0, 1, 62, 63, 64, 65, 127, 128, 191, 192, 4095, 4096, Long.MAX_VALUE};
+
+        LongBitmap bitmap = LongBitmap.of(ids);
+
+        assertThat(bitmap.toArray()).containsExactly(ids);
+        assertThat(bitmap.cardinality()).isEqualTo(ids.length);
+        for (long id : ids) {
+            assertThat(bitmap.contains(id)).isTrue();
+        }
+        assertThat(bitmap.contains(2)).isFalse();
+        assertThat(bitmap.contains(129)).isFalse();
+        assertThat(bitmap.contains(Long.MAX_VALUE - 1)).isFalse();
+    }
+
+    @Test
+    public void duplicatesCountOnce() {
+        LongBitmap bitmap = LongBitmap.of(new long[]{5, 5, 64, 64, 64});
+
+        assertThat(bitmap.cardinality()).isEqualTo(2);
+        assertThat(bitmap.toArray()).containsExactly(5, 64);
+    }
+
+    @Test
+    public void andKeepsOnlyBitsSetInBothWords() {
+        LongBitmap first = LongBitmap.of(new long[]{1, 63, 64, 100, 127, 128, 1000});
+        LongBitmap second = LongBitmap.of(new long[]{0, 63, 65, 100, 128, 999, 1000, 5000});
+
+        assertThat(first.and(second)).containsExactly(63, 100, 128, 1000);
+        assertThat(second.and(first)).containsExactly(63, 100, 128, 1000);
+    }
+
+    @Test
+    public void andOfDisjointBlocksIsEmpty() {
+        LongBitmap low = LongBitmap.of(new long[]{0, 1, 63});
+        LongBitmap high = LongBitmap.of(new long[]{64, 65, 127});
+
+        assertThat(low.and(high)).isEmpty();
+        assertThat(low.and(LongBitmap.EMPTY)).isEmpty();
+        assertThat(LongBitmap.EMPTY.and(high)).isEmpty();
+    }
+
+    @Test
+    public void withAndWithoutAddAndDropWholeBlocks() {
+        LongBitmap bitmap = LongBitmap.EMPTY.with(64).with(63).with(128).with(63);
+
+        assertThat(bitmap.toArray()).containsExactly(63, 64, 128);
+        assertThat(bitmap.cardinality()).isEqualTo(3);
+
+        LongBitmap withoutBlock = bitmap.without(64).without(64).without(7);
+        assertThat(withoutBlock.toArray()).containsExactly(63, 128);
+        assertThat(withoutBlock.cardinality()).isEqualTo(2);
+        assertThat(withoutBlock.contains(64)).isFalse();
+        assertThat(bitmap.contains(64)).isTrue();
+    }
+
+    @Test
+    public void matchesTreeSetUnderRandomEditsAndIntersections() {
+        Random random = new Random(11);
+        LongBitmap first = LongBitmap.EMPTY;
+        LongBitmap second = LongBitmap.EMPTY;
+        TreeSet<Long> firstExpected = new TreeSet<>();
+        TreeSet<Long> secondExpected = new TreeSet<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            long id = random.nextInt(640);
+            boolean add = random.nextInt(4) != 0;
+            if (random.nextBoolean()) {
+                first = add ? first.with(id) : first.without(id);
+                if (add) {
+                    firstExpected.add(id);
+                } else {
+                    firstExpected.remove(id);
+                }
+            } else {
+                second = add ? second.with(id) : second.without(id);
+                if (add) {
+                    secondExpected.add(id);
+                } else {
+                    secondExpected.remove(id);
+                }
+            }
+        }
+
+        TreeSet<Long> common = new TreeSet<>(firstExpected);
+        common.retainAll(secondExpected);
+        assertThat(first.toArray()).containsExactly(firstExpected.stream().mapToLong(Long::longValue).toArray());
+        assertThat(first.cardinality()).isEqualTo(firstExpected.size());
+        assertThat(first.and(second)).containsExactly(common.stream().mapToLong(Long::longValue).toArray());
+    }
+}